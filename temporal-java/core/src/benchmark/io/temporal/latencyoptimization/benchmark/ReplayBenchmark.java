@@ -0,0 +1,153 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import io.temporal.client.WorkflowClientOptions;
+import io.temporal.common.WorkflowExecutionHistory;
+import io.temporal.latencyoptimization.api.TemporalClient;
+import io.temporal.latencyoptimization.workflowtypes.TransactionProcessorWorkflowImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalBeforeUpdateImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowParallelImpl;
+import io.temporal.testing.ReplayResults;
+import io.temporal.testing.TestEnvironmentOptions;
+import io.temporal.testing.TestWorkflowEnvironment;
+import io.temporal.testing.WorkflowReplayer;
+import io.temporal.worker.Worker;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Replays the histories archived by {@code POST /histories/capture} against the current workflow
+ * code. The first pass checks determinism and lists every history that no longer replays, the
+ * timed passes measure what a sticky cache miss costs each scenario: full replays per second and
+ * time per history event.
+ *
+ * <pre>
+ * ./gradlew -q benchmark -Parg=histories
+ * </pre>
+ *
+ * Exits with status 1 if any history fails to replay, so it can gate workflow changes.
+ */
+public class ReplayBenchmark {
+    private static final int TIMED_ROUNDS = 5;
+    private static final String TASK_QUEUE = "replay";
+
+    public static void main(String[] args) throws Exception {
+        Path directory = Path.of(args.length > 0 && !args[0].isEmpty() ? args[0] : "histories");
+        if (!Files.isDirectory(directory)) {
+            System.err.println("No archived histories in " + directory.toAbsolutePath());
+            System.exit(2);
+        }
+
+        // Same converter as the worker, otherwise binary or compressed payloads can't be decoded
+        TestWorkflowEnvironment environment = TestWorkflowEnvironment.newInstance(
+                TestEnvironmentOptions.newBuilder()
+                        .setWorkflowClientOptions(WorkflowClientOptions.newBuilder()
+                                .setDataConverter(TemporalClient.getDataConverter())
+                                .build())
+                        .build());
+        boolean nonDeterministic = false;
+        try {
+            Worker worker = environment.newWorker(TASK_QUEUE);
+            worker.registerWorkflowImplementationTypes(TransactionWorkflowImpl.class,
+                    TransactionWorkflowLocalImpl.class,
+                    TransactionWorkflowLocalBeforeUpdateImpl.class,
+                    TransactionProcessorWorkflowImpl.class,
+                    TransactionWorkflowParallelImpl.class);
+
+            System.out.printf("%-40s %9s %8s %12s %12s %12s%n",
+                    "scenario", "histories", "failed", "events/hist", "replays/s", "us/event");
+            List<Path> scenarios;
+            try (Stream<Path> dirs = Files.list(directory)) {
+                scenarios = dirs.filter(Files::isDirectory).sorted().toList();
+            }
+            for (Path scenario : scenarios) {
+                nonDeterministic |= replay(scenario, worker);
+            }
+        } finally {
+            environment.close();
+        }
+
+        if (nonDeterministic) {
+            System.exit(1);
+        }
+    }
+
+    // Returns true if any history of the scenario failed to replay
+    private static boolean replay(Path scenario, Worker worker) throws Exception {
+        List<WorkflowExecutionHistory> histories = load(scenario);
+        if (histories.isEmpty()) {
+            return false;
+        }
+        long events = 0;
+        for (WorkflowExecutionHistory history : histories) {
+            events += history.getEvents().size();
+        }
+
+        ReplayResults check = WorkflowReplayer.replayWorkflowExecutions(histories, false, worker);
+        List<WorkflowExecutionHistory> replayable = new ArrayList<>(histories);
+        for (ReplayResults.ReplayError error : check.allErrors()) {
+            System.err.println(scenario.getFileName() + "/" + error.workflowId + ": " + error.exception);
+            replayable.removeIf(h -> h.getWorkflowExecution().getWorkflowId().equals(error.workflowId));
+        }
+
+        long replayableEvents = 0;
+        for (WorkflowExecutionHistory history : replayable) {
+            replayableEvents += history.getEvents().size();
+        }
+        double replaysPerSecond = 0;
+        double microsPerEvent = 0;
+        if (!replayable.isEmpty()) {
+            WorkflowReplayer.replayWorkflowExecutions(replayable, true, worker); // warm up
+            long begin = System.nanoTime();
+            for (int round = 0; round < TIMED_ROUNDS; round++) {
+                WorkflowReplayer.replayWorkflowExecutions(replayable, true, worker);
+            }
+            long elapsed = System.nanoTime() - begin;
+            replaysPerSecond = (double) TIMED_ROUNDS * replayable.size() / (elapsed / 1e9);
+            microsPerEvent = elapsed / 1000.0 / (TIMED_ROUNDS * replayableEvents);
+        }
+
+        System.out.printf("%-40s %9d %8d %12.1f %12.1f %12.2f%n",
+                scenario.getFileName(), histories.size(), check.allErrors().size(),
+                (double) events / histories.size(), replaysPerSecond, microsPerEvent);
+        return check.hadAnyError();
+    }
+
+    private static List<WorkflowExecutionHistory> load(Path scenario) throws IOException {
+        List<WorkflowExecutionHistory> histories = new ArrayList<>();
+        try (Stream<Path> files = Files.list(scenario)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                String workflowId = file.getFileName().toString().replaceFirst("\\.json$", "");
+                histories.add(WorkflowExecutionHistory.fromJson(
+                        Files.readString(file, StandardCharsets.UTF_8), workflowId));
+            }
+        }
+        return histories;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Spreads transactions over {@code TEMPORAL_TASK_QUEUE_SHARDS} task queues, each with its own
+ * partitions and pollers. Accounts are placed on a consistent hash ring so an account always lands
+ * on the same queue, and changing the shard count only moves about 1/N of the accounts.
+ */
+public class TaskQueueRouter {
+    private static final String TASK_QUEUE = System.getenv().getOrDefault("TEMPORAL_TASK_QUEUE", "LatencyOptimization");
+    private static final int SHARDS =
+            Math.max(1, Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_TASK_QUEUE_SHARDS", "1")));
+    // Points per shard on the ring, enough to keep the shards within a few percent of each other
+    private static final int VIRTUAL_NODES = 1024;
+
+    private static final List<String> QUEUES = buildQueues();
+    private static final TreeMap<Long, Integer> RING = buildRing();
+
+    // Every task queue the workers have to poll, a single shard keeps the plain queue name
+    public static List<String> getTaskQueues() {
+        return QUEUES;
+    }
+
+    public static String taskQueueFor(String account) {
+        if (SHARDS == 1) {
+            return TASK_QUEUE;
+        }
+        Map.Entry<Long, Integer> point = RING.ceilingEntry(hash(account));
+        return QUEUES.get(point != null ? point.getValue() : RING.firstEntry().getValue());
+    }
+
+    private static List<String> buildQueues() {
+        if (SHARDS == 1) {
+            return Collections.singletonList(TASK_QUEUE);
+        }
+        List<String> queues = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            queues.add(TASK_QUEUE + "-shard-" + shard);
+        }
+        return Collections.unmodifiableList(queues);
+    }
+
+    private static TreeMap<Long, Integer> buildRing() {
+        TreeMap<Long, Integer> ring = new TreeMap<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(hash(TASK_QUEUE + "#" + shard + "#" + node), shard);
+            }
+        }
+        return ring;
+    }
+
+    // 64-bit FNV-1a with a murmur finalizer, String.hashCode clusters similar account names
+    private static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -20,18 +20,28 @@
 package io.temporal.latencyoptimization;
 
 import io.temporal.api.common.v1.WorkflowExecution;
+import io.temporal.api.enums.v1.WorkflowIdConflictPolicy;
 import io.temporal.client.*;
 import io.temporal.latencyoptimization.api.ServerInfo;
 import io.temporal.latencyoptimization.api.WorkflowExecutionResult;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
 import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.latencyoptimization.workflowtypes.TransactionProcessorWorkflow;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocal;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalBeforeUpdate;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowParallel;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflow;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class WorkflowRunClient {
-    private static final String TASK_QUEUE = System.getenv().getOrDefault("TEMPORAL_TASK_QUEUE", "LatencyOptimization");
+    private static final Logger log = LoggerFactory.getLogger(WorkflowRunClient.class);
     private static final String WORKFLOW_ID_PREFIX = "latency-";
+    private static final String PROCESSOR_ID_PREFIX = "latency-processor-";
+    private static final int PROCESSOR_POOL_SIZE =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_PROCESSOR_POOL_SIZE", "4"));
+    private static final int PROCESSOR_SUBMIT_ATTEMPTS = 5;
 
 //    public static void main(String[] args) throws FileNotFoundException, SSLException {
 //        WorkflowClient client = TemporalClient.get();
@@ -48,16 +58,17 @@ public class WorkflowRunClient {
                                                                          TransactionRequest txRequest,
                                                                          ServerInfo serverInfo) {
 
-        WorkflowOptions options = buildWorkflowOptions(id, false);
+        WorkflowOptions options = buildWorkflowOptions(id, txRequest.getSourceAccount(), false);
         String workflowId = options.getWorkflowId();
 
         TransactionWorkflowLocal workflow = client.newWorkflowStub(TransactionWorkflowLocal.class, options);
 
-        System.out.println("Starting workflow");
+        log.debug("Starting workflow {}", workflowId);
 
         WorkflowExecutionResult.Builder resultBuilder = new WorkflowExecutionResult.Builder()
                 .workflowId(workflowId)
-                .workflowUrl(serverInfo.getWorkflowUrl(workflowId));
+                .workflowUrl(serverInfo.getWorkflowUrl(workflowId))
+                .taskQueue(options.getTaskQueue());
 
         try {
             // Start timing for overall workflow
@@ -67,22 +78,12 @@ public class WorkflowRunClient {
                     WorkflowClient.start(workflow::processTransaction, txRequest);
 
             TxResult workflowResult = WorkflowStub.fromTyped(workflow).getResult(TxResult.class);
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
 
             // Calculate workflow latency
             double workflowLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
+            log.info("Workflow {} completed with result: {} (transactionId: {})",
+                    workflowId, workflowResult.getStatus(), workflowResult.getTransactionId());
 
             return resultBuilder
                     .updateResponseLatencyMs(0)
@@ -93,21 +94,7 @@ public class WorkflowRunClient {
                     .build();
 
         } catch (Exception e) {
-            if (e.getCause() instanceof io.grpc.StatusRuntimeException) {
-                io.grpc.StatusRuntimeException sre = (io.grpc.StatusRuntimeException) e.getCause();
-                System.err.println("Workflow failed with StatusRuntimeException: " + sre.getMessage());
-                System.err.println("Cause: " + e.getCause());
-
-                if (sre.getStatus().getCode() == io.grpc.Status.Code.PERMISSION_DENIED
-                        && sre.getMessage()
-                        .contains("ExecuteMultiOperation API is disabled on this namespace")) {
-                    System.err.println(
-                            "UpdateWithStart requires the ExecuteMultiOperation API to be enabled on this namespace.");
-                }
-            } else {
-                System.err.println("Transaction initialization failed: " + e.getMessage());
-                System.err.println("Cause: " + e.getCause());
-            }
+            logFailure(workflowId, e);
 
             return resultBuilder
                     .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.FAILED)
@@ -115,68 +102,71 @@ public class WorkflowRunClient {
         }
     }
 
+    /**
+     * Runs one of the early-return workflows with Update-With-Start. The workflow interface picks the
+     * variant, e.g. {@link TransactionWorkflowLocalBeforeUpdate} or {@link TransactionWorkflowParallel};
+     * every variant exposes the same "early-return" update.
+     */
     public static WorkflowExecutionResult runWorkflowWithUpdateWithStartLocal(WorkflowClient client,
+                                                                         Class<?> workflowInterface,
                                                                          String wfType,
                                                                          String id,
                                                                          TransactionRequest txRequest,
                                                                          ServerInfo serverInfo) {
 
-        WorkflowOptions options = buildWorkflowOptions(id, false);
+        WorkflowOptions options = buildWorkflowOptions(id, txRequest.getSourceAccount(), false);
         String workflowId = options.getWorkflowId();
 
-        System.out.println("Starting workflow with UpdateWithStart and some local activities");
+        log.debug("Starting workflow {} with UpdateWithStart and some local activities", workflowId);
 
-        // Create the workflow stub dynamically based on workflowClass
-        TransactionWorkflowLocalBeforeUpdate workflow = client.newWorkflowStub(TransactionWorkflowLocalBeforeUpdate.class, options);
+        WorkflowStub workflow = WorkflowStub.fromTyped(client.newWorkflowStub(workflowInterface, options));
+
+        // The Accepted variants return to the caller as soon as the server durably accepts the update
+        WorkflowUpdateStage waitForStage = wfType.endsWith("Accepted")
+                ? WorkflowUpdateStage.ACCEPTED
+                : WorkflowUpdateStage.COMPLETED;
 
         // Prepare the Update-With-Start operation
         UpdateWithStartWorkflowOperation<TxResult> updateOp =
-                UpdateWithStartWorkflowOperation.newBuilder(workflow::returnInitResult)
-                        .setWaitForStage(WorkflowUpdateStage.COMPLETED) // Wait for update to complete
+                UpdateWithStartWorkflowOperation.newBuilder("early-return", TxResult.class, new Object[0])
+                        .setWaitForStage(waitForStage)
                         .build();
 
         TxResult updateResult = null;
 
         WorkflowExecutionResult.Builder resultBuilder = new WorkflowExecutionResult.Builder()
                 .workflowId(workflowId)
-                .workflowUrl(serverInfo.getWorkflowUrl(workflowId));
+                .workflowUrl(serverInfo.getWorkflowUrl(workflowId))
+                .taskQueue(options.getTaskQueue());
 
         try {
             // Start timing for overall workflow
             long startTime = System.nanoTime();
 
-            WorkflowUpdateHandle<TxResult> updateHandle =
-                    WorkflowClient.updateWithStart(workflow::processTransaction, txRequest, updateOp);
+            WorkflowUpdateHandle<TxResult> updateHandle = workflow.updateWithStart(updateOp, txRequest);
 
-            updateResult = updateHandle.getResultAsync().get();
+            // At ACCEPTED the handle is the durable ack, the result is fetched from it afterwards.
+            // Recorded right away, the caller already has its answer even if the rest of the run fails
+            if (waitForStage == WorkflowUpdateStage.ACCEPTED) {
+                resultBuilder.updateAcceptedLatencyMs((System.nanoTime() - startTime) / 1_000_000.0);
+                log.info("Workflow {} accepted the update", workflowId);
+            }
 
-            System.out.println(
-                    "Workflow initialized with result: "
-                            + updateResult.getStatus()
-                            + " (transactionId: "
-                            + updateResult.getTransactionId()
-                            + ")");
+            updateResult = updateHandle.getResultAsync().get();
 
             // Calculate update latency
             double updateLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
-            TxResult workflowResult = WorkflowStub.fromTyped(workflow).getResult(TxResult.class);
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
+            log.info("Workflow {} initialized with result: {} (transactionId: {})",
+                    workflowId, updateResult.getStatus(), updateResult.getTransactionId());
+
+            TxResult workflowResult = workflow.getResult(TxResult.class);
 
             // Calculate workflow latency
             double workflowLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
+            log.info("Workflow {} completed with result: {} (transactionId: {})",
+                    workflowId, workflowResult.getStatus(), workflowResult.getTransactionId());
 
             return resultBuilder
                     .updateResponseLatencyMs(updateLatencyMs)
@@ -187,21 +177,7 @@ public class WorkflowRunClient {
                     .build();
 
         } catch (Exception e) {
-            if (e.getCause() instanceof io.grpc.StatusRuntimeException) {
-                io.grpc.StatusRuntimeException sre = (io.grpc.StatusRuntimeException) e.getCause();
-                System.err.println("Workflow failed with StatusRuntimeException: " + sre.getMessage());
-                System.err.println("Cause: " + e.getCause());
-
-                if (sre.getStatus().getCode() == io.grpc.Status.Code.PERMISSION_DENIED
-                        && sre.getMessage()
-                        .contains("ExecuteMultiOperation API is disabled on this namespace")) {
-                    System.err.println(
-                            "UpdateWithStart requires the ExecuteMultiOperation API to be enabled on this namespace.");
-                }
-            } else {
-                System.err.println("Transaction initialization failed: " + e.getMessage());
-                System.err.println("Cause: " + e.getCause());
-            }
+            logFailure(workflowId, e);
 
             return resultBuilder
                     .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.FAILED)
@@ -217,16 +193,17 @@ public class WorkflowRunClient {
 
         boolean isEager = wfType.equals("EagerLocalActivities");
 
-        WorkflowOptions options = buildWorkflowOptions(id, isEager);
+        WorkflowOptions options = buildWorkflowOptions(id, txRequest.getSourceAccount(), isEager);
         String workflowId = options.getWorkflowId();
 
         TransactionWorkflow workflow = client.newWorkflowStub(TransactionWorkflow.class, options);
 
-        System.out.println("Starting workflow");
+        log.debug("Starting workflow {}", workflowId);
 
         WorkflowExecutionResult.Builder resultBuilder = new WorkflowExecutionResult.Builder()
                 .workflowId(workflowId)
-                .workflowUrl(serverInfo.getWorkflowUrl(workflowId));
+                .workflowUrl(serverInfo.getWorkflowUrl(workflowId))
+                .taskQueue(options.getTaskQueue());
 
         try {
             // Start timing for overall workflow
@@ -236,22 +213,12 @@ public class WorkflowRunClient {
                     WorkflowClient.start(workflow::processTransaction, txRequest);
 
             TxResult workflowResult = WorkflowStub.fromTyped(workflow).getResult(TxResult.class);
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
 
             // Calculate workflow latency
             double workflowLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
+            log.info("Workflow {} completed with result: {} (transactionId: {})",
+                    workflowId, workflowResult.getStatus(), workflowResult.getTransactionId());
 
             return resultBuilder
                     .updateResponseLatencyMs(0)
@@ -262,21 +229,7 @@ public class WorkflowRunClient {
                     .build();
 
         } catch (Exception e) {
-            if (e.getCause() instanceof io.grpc.StatusRuntimeException) {
-                io.grpc.StatusRuntimeException sre = (io.grpc.StatusRuntimeException) e.getCause();
-                System.err.println("Workflow failed with StatusRuntimeException: " + sre.getMessage());
-                System.err.println("Cause: " + e.getCause());
-
-                if (sre.getStatus().getCode() == io.grpc.Status.Code.PERMISSION_DENIED
-                        && sre.getMessage()
-                        .contains("ExecuteMultiOperation API is disabled on this namespace")) {
-                    System.err.println(
-                            "UpdateWithStart requires the ExecuteMultiOperation API to be enabled on this namespace.");
-                }
-            } else {
-                System.err.println("Transaction initialization failed: " + e.getMessage());
-                System.err.println("Cause: " + e.getCause());
-            }
+            logFailure(workflowId, e);
 
             return resultBuilder
                     .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.FAILED)
@@ -291,25 +244,31 @@ public class WorkflowRunClient {
                                                                          TransactionRequest txRequest,
                                                                          ServerInfo serverInfo) {
 
-        WorkflowOptions options = buildWorkflowOptions(id, false);
+        WorkflowOptions options = buildWorkflowOptions(id, txRequest.getSourceAccount(), false);
         String workflowId = options.getWorkflowId();
 
-        System.out.println("Starting workflow with UpdateWithStart");
+        log.debug("Starting workflow {} with UpdateWithStart", workflowId);
 
         // Create the workflow stub dynamically based on workflowClass
         TransactionWorkflow workflow = client.newWorkflowStub(TransactionWorkflow.class, options);
 
+        // The Accepted variants return to the caller as soon as the server durably accepts the update
+        WorkflowUpdateStage waitForStage = wfType.endsWith("Accepted")
+                ? WorkflowUpdateStage.ACCEPTED
+                : WorkflowUpdateStage.COMPLETED;
+
         // Prepare the Update-With-Start operation
         UpdateWithStartWorkflowOperation<TxResult> updateOp =
                 UpdateWithStartWorkflowOperation.newBuilder(workflow::returnInitResult)
-                        .setWaitForStage(WorkflowUpdateStage.COMPLETED) // Wait for update to complete
+                        .setWaitForStage(waitForStage)
                         .build();
 
         TxResult updateResult = null;
 
         WorkflowExecutionResult.Builder resultBuilder = new WorkflowExecutionResult.Builder()
                 .workflowId(workflowId)
-                .workflowUrl(serverInfo.getWorkflowUrl(workflowId));
+                .workflowUrl(serverInfo.getWorkflowUrl(workflowId))
+                .taskQueue(options.getTaskQueue());
 
         try {
             // Start timing for overall workflow
@@ -318,35 +277,28 @@ public class WorkflowRunClient {
             WorkflowUpdateHandle<TxResult> updateHandle =
                     WorkflowClient.updateWithStart(workflow::processTransaction, txRequest, updateOp);
 
-            updateResult = updateHandle.getResultAsync().get();
+            // At ACCEPTED the handle is the durable ack, the result is fetched from it afterwards.
+            // Recorded right away, the caller already has its answer even if the rest of the run fails
+            if (waitForStage == WorkflowUpdateStage.ACCEPTED) {
+                resultBuilder.updateAcceptedLatencyMs((System.nanoTime() - startTime) / 1_000_000.0);
+                log.info("Workflow {} accepted the update", workflowId);
+            }
 
-            System.out.println(
-                    "Workflow initialized with result: "
-                            + updateResult.getStatus()
-                            + " (transactionId: "
-                            + updateResult.getTransactionId()
-                            + ")");
+            updateResult = updateHandle.getResultAsync().get();
 
             // Calculate update latency
             double updateLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
+            log.info("Workflow {} initialized with result: {} (transactionId: {})",
+                    workflowId, updateResult.getStatus(), updateResult.getTransactionId());
+
             TxResult workflowResult = WorkflowStub.fromTyped(workflow).getResult(TxResult.class);
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
 
             // Calculate workflow latency
             double workflowLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
 
-            System.out.println(
-                    "Workflow completed with result: "
-                            + workflowResult.getStatus()
-                            + " (transactionId: "
-                            + workflowResult.getTransactionId()
-                            + ")");
+            log.info("Workflow {} completed with result: {} (transactionId: {})",
+                    workflowId, workflowResult.getStatus(), workflowResult.getTransactionId());
 
             return resultBuilder
                     .updateResponseLatencyMs(updateLatencyMs)
@@ -357,39 +309,180 @@ public class WorkflowRunClient {
                     .build();
 
         } catch (Exception e) {
-            if (e.getCause() instanceof io.grpc.StatusRuntimeException) {
-                io.grpc.StatusRuntimeException sre = (io.grpc.StatusRuntimeException) e.getCause();
-                System.err.println("Workflow failed with StatusRuntimeException: " + sre.getMessage());
-                System.err.println("Cause: " + e.getCause());
-
-                if (sre.getStatus().getCode() == io.grpc.Status.Code.PERMISSION_DENIED
-                        && sre.getMessage()
-                        .contains("ExecuteMultiOperation API is disabled on this namespace")) {
-                    System.err.println(
-                            "UpdateWithStart requires the ExecuteMultiOperation API to be enabled on this namespace.");
+            logFailure(workflowId, e);
+
+            return resultBuilder
+                    .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.FAILED)
+                    .build();
+        }
+    }
+
+    // Start every queue's processors up front so the first transactions don't pay for the start
+    public static void warmTransactionProcessors(WorkflowClient client) {
+        for (String taskQueue : TaskQueueRouter.getTaskQueues()) {
+            for (int slot = 0; slot < PROCESSOR_POOL_SIZE; slot++) {
+                TransactionProcessorWorkflow processor = client.newWorkflowStub(
+                        TransactionProcessorWorkflow.class, buildProcessorOptions(taskQueue, slot));
+                WorkflowClient.start(processor::run);
+            }
+        }
+    }
+
+    public static WorkflowExecutionResult runTransactionProcessor(WorkflowClient client,
+                                                                  String wfType,
+                                                                  String id,
+                                                                  TransactionRequest txRequest,
+                                                                  ServerInfo serverInfo) {
+
+        // Route every account to the same processor so its workflow stays hot in the sticky cache. The
+        // ring picks the queue, as for every other scenario, and the account's hash a processor on it
+        String taskQueue = TaskQueueRouter.taskQueueFor(txRequest.getSourceAccount());
+        int slot = Math.floorMod(txRequest.getSourceAccount().hashCode(), PROCESSOR_POOL_SIZE);
+        WorkflowOptions options = buildProcessorOptions(taskQueue, slot);
+        String workflowId = options.getWorkflowId();
+
+        log.debug("Submitting transaction to processor {}", workflowId);
+
+        WorkflowExecutionResult.Builder resultBuilder = new WorkflowExecutionResult.Builder()
+                .workflowId(workflowId)
+                .workflowUrl(serverInfo.getWorkflowUrl(workflowId))
+                .taskQueue(options.getTaskQueue());
+
+        try {
+            // Start timing for overall workflow
+            long startTime = System.nanoTime();
+
+            TxResult updateResult = null;
+            WorkflowExecution processorRun = null;
+            for (int attempt = 1; updateResult == null; attempt++) {
+                TransactionProcessorWorkflow processor =
+                        client.newWorkflowStub(TransactionProcessorWorkflow.class, options);
+
+                // Attaches to the running processor, and only starts one if it isn't running
+                UpdateWithStartWorkflowOperation<TxResult> updateOp =
+                        UpdateWithStartWorkflowOperation.newBuilder(processor::submitTransaction, txRequest)
+                                .setUpdateId(WORKFLOW_ID_PREFIX + id)
+                                .setWaitForStage(WorkflowUpdateStage.COMPLETED) // Wait for update to complete
+                                .build();
+
+                try {
+                    WorkflowUpdateHandle<TxResult> handle = WorkflowClient.updateWithStart(processor::run, updateOp);
+                    updateResult = handle.getResultAsync().get();
+                    processorRun = handle.getExecution();
+                } catch (Exception e) {
+                    // The processor rejects updates while it drains for continue-as-new
+                    if (attempt >= PROCESSOR_SUBMIT_ATTEMPTS || !isRejectedByDrainingProcessor(e)) {
+                        throw e;
+                    }
+                    Thread.sleep(20L * attempt);
                 }
-            } else {
-                System.err.println("Transaction initialization failed: " + e.getMessage());
-                System.err.println("Cause: " + e.getCause());
             }
 
+            // Calculate update latency
+            double updateLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
+
+            log.info("Transaction initialized by {} with result: {} (transactionId: {})",
+                    workflowId, updateResult.getStatus(), updateResult.getTransactionId());
+
+            // Settlement completes inside the long-lived processor, there is no per-transaction workflow
+            // result. The workflow latency of a processor run is the time until its transaction settled.
+            TxResult settlement = awaitSettlement(client, processorRun, updateResult.getTransactionId());
+            double settlementLatencyMs = (System.nanoTime() - startTime) / 1_000_000.0;
+
+            return resultBuilder
+                    .updateResponseLatencyMs(updateLatencyMs)
+                    .workflowResponseLatencyMs(settlementLatencyMs)
+                    .updateResult(updateResult)
+                    .workflowResult(settlement)
+                    .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.COMPLETED)
+                    .build();
+
+        } catch (Exception e) {
+            log.warn("Transaction initialization failed for {}: {}", workflowId, e.getMessage(), e);
+
             return resultBuilder
                     .executionStatus(WorkflowExecutionResult.WorkflowExecutionStatus.FAILED)
                     .build();
         }
     }
 
-    // Build WorkflowOptions with task queue and unique ID
-    private static WorkflowOptions buildWorkflowOptions(String id, boolean isEager) {
+    private static void logFailure(String workflowId, Exception e) {
+        if (e.getCause() instanceof io.grpc.StatusRuntimeException) {
+            io.grpc.StatusRuntimeException sre = (io.grpc.StatusRuntimeException) e.getCause();
+            log.warn("Workflow {} failed with StatusRuntimeException: {}", workflowId, sre.getMessage(), e);
+
+            if (sre.getStatus().getCode() == io.grpc.Status.Code.PERMISSION_DENIED
+                    && sre.getMessage()
+                    .contains("ExecuteMultiOperation API is disabled on this namespace")) {
+                log.warn("UpdateWithStart requires the ExecuteMultiOperation API to be enabled on this namespace.");
+            }
+        } else {
+            log.warn("Transaction initialization failed for {}: {}", workflowId, e.getMessage(), e);
+        }
+    }
+
+    // Waits on the processor run that took the transaction. A run only continues as new once all its
+    // transactions have settled, so if it is gone the transaction has settled too
+    private static TxResult awaitSettlement(WorkflowClient client, WorkflowExecution processorRun,
+                                            String transactionId) {
+        TransactionProcessorWorkflow processor = client.newWorkflowStub(TransactionProcessorWorkflow.class,
+                processorRun.getWorkflowId(), Optional.of(processorRun.getRunId()));
+        try {
+            return processor.awaitSettlement(transactionId);
+        } catch (WorkflowNotFoundException e) {
+            return new TxResult(transactionId, "Transaction settled before the processor continued as new.");
+        }
+    }
+
+    private static boolean isRejectedByDrainingProcessor(Exception e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("Processor is continuing as new")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A processor keeps the task queue it was started on, so each queue has its own pool of processors
+    private static WorkflowOptions buildProcessorOptions(String taskQueue, int slot) {
+        int processor = TaskQueueRouter.getTaskQueues().indexOf(taskQueue) * PROCESSOR_POOL_SIZE + slot;
+        return WorkflowOptions.newBuilder()
+                .setTaskQueue(taskQueue)
+                .setWorkflowId(PROCESSOR_ID_PREFIX + processor)
+                .setWorkflowIdConflictPolicy(WorkflowIdConflictPolicy.WORKFLOW_ID_CONFLICT_POLICY_USE_EXISTING)
+                .build();
+    }
+
+    // Workflow ID of a run key, for TransactionProcessor runs this is the ID of their update
+    public static String workflowIdOf(String id) {
+        return WORKFLOW_ID_PREFIX + id;
+    }
+
+    // Recover the scenario from workflow IDs built as <request id>-<scenario>-iteration-<n>
+    public static String scenarioOf(String workflowId) {
+        if (workflowId == null) {
+            return "unknown";
+        }
+        if (workflowId.startsWith(PROCESSOR_ID_PREFIX)) {
+            return "TransactionProcessor";
+        }
+        int iteration = workflowId.lastIndexOf("-iteration-");
+        int scenarioStart = iteration > 0 ? workflowId.lastIndexOf('-', iteration - 1) : -1;
+        return scenarioStart >= 0 ? workflowId.substring(scenarioStart + 1, iteration) : "unknown";
+    }
+
+    // Build WorkflowOptions with the task queue of the source account and unique ID
+    private static WorkflowOptions buildWorkflowOptions(String id, String sourceAccount, boolean isEager) {
+        String taskQueue = TaskQueueRouter.taskQueueFor(sourceAccount);
         if(!isEager) {
             return WorkflowOptions.newBuilder()
-                    .setTaskQueue(TASK_QUEUE)
+                    .setTaskQueue(taskQueue)
                     .setWorkflowId(WORKFLOW_ID_PREFIX + id)
                     .build();
         } else {
-            System.out.println("Eager execution enabled");
+            log.debug("Eager execution enabled");
             return WorkflowOptions.newBuilder()
-                    .setTaskQueue(TASK_QUEUE)
+                    .setTaskQueue(taskQueue)
                     .setWorkflowId(WORKFLOW_ID_PREFIX + id)
                     .setDisableEagerExecution(false) // set this to enable eager execution
                     .build();
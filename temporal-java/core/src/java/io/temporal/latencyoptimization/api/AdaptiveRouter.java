@@ -0,0 +1,174 @@
+package io.temporal.latencyoptimization.api;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Picks the scenario for each "Adaptive" run with Thompson sampling over the latency the caller sees.
+// Each arm keeps a Gaussian estimate of its log latency from exponentially decayed sums, so an arm
+// that gets slower (a cold cache, a busy worker) loses traffic within a few hundred runs, and the
+// evidence of arms that aren't picked fades so they get retried. The arm with the lowest latency
+// drawn from its posterior wins, so uncertain arms still get explored.
+public class AdaptiveRouter {
+    // Per-run decay of every arm's evidence, older runs count less so the router tracks drift
+    private static final double DECAY = 0.995;
+    // Failed runs count as this slow
+    private static final double FAILURE_LATENCY_MS = 30_000;
+    // Prior standard deviation of log latency, wide enough that a few runs dominate it
+    private static final double PRIOR_SIGMA = 1.0;
+    private static final int DECISION_LOG_SIZE = 10_000;
+    private static final long ALLOCATION_INTERVAL_SECONDS = 10;
+
+    private final List<String> arms;
+    private final Map<String, Arm> stats = new LinkedHashMap<>();
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+    private final Random random = new Random();
+
+    public AdaptiveRouter(List<String> arms, Set<String> scenarios) {
+        if (arms.isEmpty() || arms.contains("Adaptive")) {
+            throw new IllegalArgumentException("Adaptive needs other scenarios to route to: " + arms);
+        }
+        // An arm that can't run would never report back, fail at startup instead
+        for (String arm : arms) {
+            if (!scenarios.contains(arm)) {
+                throw new IllegalArgumentException("Adaptive can't route to unknown scenario '" + arm
+                        + "', expected one of " + new TreeSet<>(scenarios));
+            }
+        }
+        this.arms = arms;
+        for (String arm : arms) {
+            stats.put(arm, new Arm());
+        }
+    }
+
+    // Pulls count when an arm is chosen rather than when its run reports back, so concurrent runs
+    // spread over the cold arms instead of piling onto the first one
+    public synchronized String choose() {
+        String best = null;
+        double bestDraw = Double.MAX_VALUE;
+        for (String arm : arms) {
+            Arm a = stats.get(arm);
+            // Every arm is tried twice before sampling, a single run has no spread
+            if (a.pulls < 2) {
+                a.pulls++;
+                return arm;
+            }
+            // Its warm-up runs are still in flight, there is nothing to sample yet
+            if (a.weight == 0) {
+                continue;
+            }
+            double draw = a.mean() + random.nextGaussian() * a.posteriorSigma();
+            if (draw < bestDraw) {
+                bestDraw = draw;
+                best = arm;
+            }
+        }
+        if (best == null) {
+            // Every arm is still warming up, spread the run to the least pulled one
+            for (String arm : arms) {
+                if (best == null || stats.get(arm).pulls < stats.get(best).pulls) {
+                    best = arm;
+                }
+            }
+        }
+        stats.get(best).pulls++;
+        return best;
+    }
+
+    // Takes back the pull of a chosen arm whose run never started, e.g. it wasn't admitted
+    public synchronized void cancel(String arm) {
+        stats.get(arm).pulls--;
+    }
+
+    public synchronized void observe(String arm, double latencyMs, boolean completed) {
+        double observed = completed ? latencyMs : FAILURE_LATENCY_MS;
+        double x = Math.log(Math.max(0.1, observed));
+        for (Arm a : stats.values()) {
+            a.decay();
+        }
+        stats.get(arm).add(x, completed);
+
+        decisions.addLast(new Decision(Instant.now().getEpochSecond(), arm));
+        if (decisions.size() > DECISION_LOG_SIZE) {
+            decisions.removeFirst();
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> armStats = new LinkedHashMap<>();
+        for (String arm : arms) {
+            Arm a = stats.get(arm);
+            Map<String, Object> s = new LinkedHashMap<>();
+            s.put("pulls", a.pulls);
+            s.put("failures", a.failures);
+            s.put("weight", a.weight);
+            s.put("estimatedLatencyMs", a.weight > 0 ? Math.exp(a.mean()) : null);
+            armStats.put(arm, s);
+        }
+
+        // Share of runs routed to each arm per interval, oldest first
+        Map<Long, Map<String, Integer>> allocation = new TreeMap<>();
+        for (Decision decision : decisions) {
+            long interval = decision.epochSecond - decision.epochSecond % ALLOCATION_INTERVAL_SECONDS;
+            allocation.computeIfAbsent(interval, k -> new TreeMap<>()).merge(decision.arm, 1, Integer::sum);
+        }
+        Map<String, Object> timeline = new LinkedHashMap<>();
+        allocation.forEach((interval, counts) -> timeline.put(Instant.ofEpochSecond(interval).toString(), counts));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("arms", armStats);
+        result.put("allocation", timeline);
+        return result;
+    }
+
+    private static class Arm {
+        private int pulls;
+        private int failures;
+        private double weight;
+        private double sum;
+        private double sumSquares;
+
+        void decay() {
+            weight *= DECAY;
+            sum *= DECAY;
+            sumSquares *= DECAY;
+        }
+
+        void add(double x, boolean completed) {
+            if (!completed) {
+                failures++;
+            }
+            weight += 1;
+            sum += x;
+            sumSquares += x * x;
+        }
+
+        double mean() {
+            return sum / weight;
+        }
+
+        // Spread of the estimated mean: sample variance shrunk toward the prior, over the evidence
+        double posteriorSigma() {
+            double variance = Math.max(0, sumSquares / weight - mean() * mean());
+            double shrunk = (variance * weight + PRIOR_SIGMA * PRIOR_SIGMA) / (weight + 1);
+            return Math.sqrt(shrunk / weight);
+        }
+    }
+
+    private static class Decision {
+        final long epochSecond;
+        final String arm;
+
+        Decision(long epochSecond, String arm) {
+            this.epochSecond = epochSecond;
+            this.arm = arm;
+        }
+    }
+}
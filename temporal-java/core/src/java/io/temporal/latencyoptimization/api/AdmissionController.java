@@ -0,0 +1,127 @@
+package io.temporal.latencyoptimization.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Admits workflow starts from the caller API: a token bucket limits starts per second across all
+// scenarios and a semaphore per scenario caps its in-flight workflows. Starts that can't be
+// admitted right away wait in a bounded queue, and are rejected once it is full or their wait
+// times out, so overload turns into 429s instead of every run timing out on a saturated worker.
+public class AdmissionController {
+    private final double startsPerSecond;
+    private final double burst;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final long queueTimeoutNanos;
+
+    private final ConcurrentHashMap<String, Semaphore> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    // Token bucket state, guarded by this
+    private double tokens;
+    private long refilledAtNanos = System.nanoTime();
+
+    // startsPerSecond and maxInFlight of 0 disable that limit
+    public AdmissionController(double startsPerSecond, int maxInFlight, int maxQueued, long queueTimeoutMs) {
+        this.startsPerSecond = startsPerSecond;
+        this.burst = Math.max(1, startsPerSecond);
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMs);
+        this.tokens = burst;
+    }
+
+    public static class RejectedException extends Exception {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    // Blocks until the start is admitted, call release(scenario) once its workflow is done
+    public void acquire(String scenario) throws RejectedException, InterruptedException {
+        if (startsPerSecond <= 0 && maxInFlight <= 0) {
+            admitted.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectedQueueFull.incrementAndGet();
+            throw new RejectedException("Admission queue is full (" + maxQueued + " waiting)");
+        }
+
+        try {
+            long deadline = System.nanoTime() + queueTimeoutNanos;
+            Semaphore slots = maxInFlight > 0 ? inFlightOf(scenario) : null;
+            if (slots != null && !slots.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                rejectedTimeout.incrementAndGet();
+                throw new RejectedException(scenario + " already has " + maxInFlight + " workflows in flight");
+            }
+
+            long waitNanos = startsPerSecond > 0 ? reserveToken(deadline) : 0;
+            if (waitNanos < 0) {
+                if (slots != null) {
+                    slots.release();
+                }
+                rejectedTimeout.incrementAndGet();
+                throw new RejectedException("Start rate is limited to " + startsPerSecond + " per second");
+            }
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            admitted.incrementAndGet();
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    public void release(String scenario) {
+        if (maxInFlight > 0) {
+            inFlightOf(scenario).release();
+        }
+    }
+
+    // Takes a token, going into debt when the bucket is empty, and returns how long to wait for the
+    // token to be earned. Returns -1 without taking it if that would be past the deadline.
+    private synchronized long reserveToken(long deadline) {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAtNanos) * startsPerSecond / 1e9);
+        refilledAtNanos = now;
+
+        long waitNanos = tokens >= 1 ? 0 : (long) ((1 - tokens) * 1e9 / startsPerSecond);
+        if (now + waitNanos > deadline) {
+            return -1;
+        }
+        tokens -= 1;
+        return waitNanos;
+    }
+
+    private Semaphore inFlightOf(String scenario) {
+        return inFlight.computeIfAbsent(scenario, s -> new Semaphore(maxInFlight, true));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("startsPerSecond", startsPerSecond);
+        stats.put("maxInFlightPerScenario", maxInFlight);
+        stats.put("maxQueued", maxQueued);
+        stats.put("queueTimeoutMs", TimeUnit.NANOSECONDS.toMillis(queueTimeoutNanos));
+        stats.put("queued", queued.get());
+        stats.put("admitted", admitted.get());
+        stats.put("rejectedQueueFull", rejectedQueueFull.get());
+        stats.put("rejectedTimeout", rejectedTimeout.get());
+        Map<String, Integer> scenarios = new TreeMap<>();
+        inFlight.forEach((scenario, slots) -> scenarios.put(scenario, maxInFlight - slots.availablePermits()));
+        stats.put("inFlight", scenarios);
+        return stats;
+    }
+}
@@ -1,62 +1,361 @@
 package io.temporal.latencyoptimization.api;
 
 import io.javalin.Javalin;
+import io.temporal.client.ActivityCompletionClient;
 import io.temporal.client.WorkflowClient;
+import io.temporal.latencyoptimization.TaskQueueRouter;
 import io.temporal.latencyoptimization.WorkflowRunClient;
+import io.temporal.latencyoptimization.metrics.LatencySampleStore;
+import io.temporal.latencyoptimization.metrics.RollingWindowMetrics;
+import io.temporal.latencyoptimization.metrics.ScenarioSamples;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import io.temporal.latencyoptimization.transaction.SnowflakeTransactionIdGenerator;
+import io.temporal.latencyoptimization.transaction.TransactionIdGenerator;
+import io.temporal.latencyoptimization.workflowtypes.TransactionProcessorWorkflowImpl;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowParallelImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowParallel;
 import io.temporal.worker.Worker;
 import io.temporal.worker.WorkerFactory;
+import io.temporal.worker.WorkerFactoryOptions;
+import io.temporal.latencyoptimization.tracing.OpenTelemetrySpanExporter;
+import io.temporal.latencyoptimization.tracing.TraceBuffer;
+import io.temporal.latencyoptimization.tracing.TracingClientInterceptor;
+import io.temporal.latencyoptimization.tracing.TracingWorkerInterceptor;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowImpl;
+import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalBeforeUpdate;
 import io.temporal.latencyoptimization.workflowtypes.TransactionWorkflowLocalBeforeUpdateImpl;
 import io.temporal.latencyoptimization.workflowtypes.TransactionActivitiesImpl;
+import io.temporal.latencyoptimization.workflowtypes.AccountLedger;
+import io.temporal.latencyoptimization.workflowtypes.CoalescingTransactionActivities;
+import io.temporal.latencyoptimization.workflowtypes.IdempotencyCache;
+import io.temporal.latencyoptimization.workflowtypes.IdempotencyFileStore;
+import io.temporal.latencyoptimization.workflowtypes.IdempotentTransactionActivities;
+import io.temporal.latencyoptimization.workflowtypes.LatencySimulator;
+import io.temporal.latencyoptimization.workflowtypes.TransactionActivities;
 
 import javax.net.ssl.SSLException;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
 public class CallerAPI {
-    private static final String TASK_QUEUE = System.getenv().getOrDefault("TEMPORAL_TASK_QUEUE", "LatencyOptimization");
+    // Coalescing window for activity calls, 0 disables coalescing
+    private static final long COALESCING_WINDOW_MS =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_ACTIVITY_COALESCING_WINDOW_MS", "0"));
+    private static final int COALESCING_MAX_BATCH =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_ACTIVITY_COALESCING_MAX_BATCH", "100"));
+    // Complete settlement asynchronously by task token instead of holding an activity slot
+    private static final boolean ASYNC_SETTLEMENT =
+            Boolean.parseBoolean(System.getenv().getOrDefault("TEMPORAL_ASYNC_SETTLEMENT", "false"));
+    // Per-method downstream latency profiles, see LatencySimulator for the format
+    private static final String ACTIVITY_LATENCY = System.getenv().getOrDefault("TEMPORAL_ACTIVITY_LATENCY", "");
+    // Track balances in an in-memory ledger so transfers on the same accounts contend
+    private static final boolean LEDGER_ENABLED =
+            Boolean.parseBoolean(System.getenv().getOrDefault("TEMPORAL_LEDGER_ENABLED", "false"));
+    private static final int LEDGER_STRIPES =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_LEDGER_STRIPES", "64"));
+    private static final long LEDGER_INITIAL_BALANCE =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_LEDGER_INITIAL_BALANCE", "1000000000"));
+    private static final double LEDGER_HOT_ACCOUNT_RATIO =
+            Double.parseDouble(System.getenv().getOrDefault("TEMPORAL_LEDGER_HOT_ACCOUNT_RATIO", "0"));
+    private static final long LEDGER_LOCK_HOLD_MICROS =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_LEDGER_LOCK_HOLD_MICROS", "0"));
+    // How long a repeated request key is answered from the idempotency cache, 0 disables it
+    private static final long IDEMPOTENCY_TTL_SECONDS =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_IDEMPOTENCY_TTL_SECONDS", "0"));
+    private static final int IDEMPOTENCY_MAX_ENTRIES =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_IDEMPOTENCY_MAX_ENTRIES", "100000"));
+    // Optional file that keeps idempotency records across worker restarts
+    private static final String IDEMPOTENCY_STORE_FILE = System.getenv("TEMPORAL_IDEMPOTENCY_STORE_FILE");
+    // Per-call spans kept in memory for GET /traces, optionally re-emitted through OpenTelemetry. Off by
+    // default, the interceptors add work to the very calls the benchmark measures
+    private static final boolean TRACING_ENABLED =
+            Boolean.parseBoolean(System.getenv().getOrDefault("TEMPORAL_TRACING", "false"));
+    private static final int TRACE_BUFFER_SIZE =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_TRACE_BUFFER_SIZE", "65536"));
+    private static final boolean TRACE_OPENTELEMETRY =
+            Boolean.parseBoolean(System.getenv().getOrDefault("TEMPORAL_TRACE_OPENTELEMETRY", "false"));
+    // Share of completed runs whose history size is fetched in the background. 0, the default, keeps
+    // the extra history reads off the frontend while latency is being measured
+    private static final double HISTORY_SAMPLE_RATE =
+            Double.parseDouble(System.getenv().getOrDefault("TEMPORAL_HISTORY_SAMPLE_RATE", "0"));
+    // Where POST /histories/capture writes workflow histories for ReplayBenchmark
+    private static final String HISTORY_DIR = System.getenv().getOrDefault("TEMPORAL_HISTORY_DIR", "histories");
+    // Admission control of /runWorkflow starts, 0 disables the rate limit and the in-flight cap
+    private static final double ADMISSION_STARTS_PER_SECOND =
+            Double.parseDouble(System.getenv().getOrDefault("TEMPORAL_ADMISSION_STARTS_PER_SECOND", "0"));
+    private static final int ADMISSION_MAX_IN_FLIGHT =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_ADMISSION_MAX_IN_FLIGHT", "0"));
+    private static final int ADMISSION_MAX_QUEUED =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_ADMISSION_MAX_QUEUED", "100"));
+    private static final long ADMISSION_QUEUE_TIMEOUT_MS =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_ADMISSION_QUEUE_TIMEOUT_MS", "5000"));
+    // Scenarios the Adaptive workflow type chooses between
+    private static final String ADAPTIVE_SCENARIOS = System.getenv().getOrDefault("TEMPORAL_ADAPTIVE_SCENARIOS",
+            "RegularActivities,LocalActivities,UpdateWithStartRegularActivities,UpdateWithStartLocalActivities,"
+                    + "EagerLocalActivities");
+    // Scenarios runScenario runs directly, everything but Adaptive
+    private static final Set<String> SCENARIOS = Set.of(
+            "RegularActivities",
+            "UpdateWithStartRegularActivities",
+            "UpdateWithStartRegularActivitiesAccepted",
+            "LocalActivities",
+            "UpdateWithStartLocalActivities",
+            "UpdateWithStartLocalActivitiesAccepted",
+            "UpdateWithStartParallelLocalActivities",
+            "EagerLocalActivities",
+            "TransactionProcessor"
+    );
+    // Page size of GET /workflows when no limit is given
+    private static final int DEFAULT_WORKFLOWS_PAGE_SIZE = 100;
+    // Serialized responses kept for GET /workflows/{id}, least recently polled dropped first
+    private static final int RESPONSE_CACHE_MAX_ENTRIES =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_RESPONSE_CACHE_MAX_ENTRIES", "1000"));
+    // Latency target for the early-return update of the scenarios whose workflows honor a budget.
+    // 0, the default, keeps them on local activities throughout so they measure what their names say.
+    private static final long UPDATE_BUDGET_MS =
+            Long.parseLong(System.getenv().getOrDefault("TEMPORAL_UPDATE_BUDGET_MS", "0"));
+    private static final Set<String> BUDGETED_SCENARIOS = Set.of(
+            "LocalActivities",
+            "UpdateWithStartLocalActivities",
+            "UpdateWithStartLocalActivitiesAccepted",
+            "EagerLocalActivities"
+    );
     private final WorkflowClient client;
+    private final TraceBuffer traceBuffer;
     private final WorkerFactory factory;
-    private final Worker worker;
+    // One worker per task queue shard, all running the same workflows and activities
+    private final List<Worker> workers = new ArrayList<>();
+    private final AccountLedger ledger;
+    private final LatencySimulator latencySimulator;
+    private final CoalescingTransactionActivities coalescingActivities;
+    private final IdempotentTransactionActivities idempotentActivities;
     private boolean workerRunning = false;
     private final WorkflowResultsStore resultsStore;
+    private final WorkflowResponseCache responseCache;
+    private final AdmissionController admission;
+    private final AdaptiveRouter adaptiveRouter;
+    private final LatencySampleStore sampleStore;
+    private final RollingWindowMetrics liveMetrics;
+    private final RollingWindowMetrics shardMetrics;
+    private final HistoryArchive historyArchive;
+    private final HistorySampler historySampler;
     private final ServerInfo serverInfo;
 
     public CallerAPI(ServerInfo serverInfo) throws FileNotFoundException, SSLException {
         this.serverInfo = serverInfo;
 
-        this.client = TemporalClient.get(serverInfo);
-        this.factory = WorkerFactory.newInstance(client);
-        this.worker = factory.newWorker(TASK_QUEUE);
-        this.resultsStore = new WorkflowResultsStore();
+        if (TRACING_ENABLED) {
+            this.traceBuffer = new TraceBuffer(TRACE_BUFFER_SIZE);
+            if (TRACE_OPENTELEMETRY) {
+                traceBuffer.addExporter(new OpenTelemetrySpanExporter());
+            }
+            this.client = TemporalClient.get(serverInfo, new TracingClientInterceptor(traceBuffer));
+            this.factory = WorkerFactory.newInstance(client, WorkerFactoryOptions.newBuilder()
+                    .setWorkerInterceptors(new TracingWorkerInterceptor(traceBuffer))
+                    .build());
+        } else {
+            this.traceBuffer = null;
+            this.client = TemporalClient.get(serverInfo);
+            this.factory = WorkerFactory.newInstance(client);
+        }
+        for (String taskQueue : TaskQueueRouter.getTaskQueues()) {
+            workers.add(factory.newWorker(taskQueue));
+        }
+        this.responseCache = new WorkflowResponseCache(RESPONSE_CACHE_MAX_ENTRIES);
+        this.resultsStore = new WorkflowResultsStore(responseCache);
+        this.admission = new AdmissionController(ADMISSION_STARTS_PER_SECOND, ADMISSION_MAX_IN_FLIGHT,
+                ADMISSION_MAX_QUEUED, ADMISSION_QUEUE_TIMEOUT_MS);
+        this.adaptiveRouter = new AdaptiveRouter(List.of(ADAPTIVE_SCENARIOS.split(",")), SCENARIOS);
+        this.sampleStore = new LatencySampleStore();
+        this.liveMetrics = new RollingWindowMetrics();
+        this.shardMetrics = new RollingWindowMetrics();
+        this.historyArchive = new HistoryArchive(Path.of(HISTORY_DIR));
+        this.historySampler = new HistorySampler(client, resultsStore, HISTORY_SAMPLE_RATE);
 
         // Register workflow and activities
-        worker.registerWorkflowImplementationTypes(TransactionWorkflowImpl.class,
-                TransactionWorkflowLocalImpl.class,
-                TransactionWorkflowLocalBeforeUpdateImpl.class);
-        worker.registerActivitiesImplementations(new TransactionActivitiesImpl());
+        for (Worker worker : workers) {
+            worker.registerWorkflowImplementationTypes(TransactionWorkflowImpl.class,
+                    TransactionWorkflowLocalImpl.class,
+                    TransactionWorkflowLocalBeforeUpdateImpl.class,
+                    TransactionProcessorWorkflowImpl.class,
+                    TransactionWorkflowParallelImpl.class);
+        }
+        ActivityCompletionClient completionClient = ASYNC_SETTLEMENT ? client.newActivityCompletionClient() : null;
+        this.ledger = LEDGER_ENABLED
+                ? new AccountLedger(LEDGER_STRIPES, LEDGER_INITIAL_BALANCE, LEDGER_HOT_ACCOUNT_RATIO,
+                        LEDGER_LOCK_HOLD_MICROS)
+                : null;
+        this.latencySimulator = new LatencySimulator(ACTIVITY_LATENCY);
+        TransactionIdGenerator idGenerator = SnowflakeTransactionIdGenerator.getDefault();
+        TransactionActivities activities;
+        if (COALESCING_WINDOW_MS > 0) {
+            this.coalescingActivities = new CoalescingTransactionActivities(
+                    new TransactionActivitiesImpl(null, idGenerator, ledger, latencySimulator),
+                    COALESCING_WINDOW_MS, COALESCING_MAX_BATCH, completionClient);
+            activities = coalescingActivities;
+        } else {
+            this.coalescingActivities = null;
+            activities = new TransactionActivitiesImpl(completionClient, idGenerator, ledger, latencySimulator);
+        }
+
+        // Deduplication sits in front of everything else so a duplicate never reaches downstream
+        if (IDEMPOTENCY_TTL_SECONDS > 0) {
+            IdempotencyFileStore store = IDEMPOTENCY_STORE_FILE != null && !IDEMPOTENCY_STORE_FILE.isEmpty()
+                    ? new IdempotencyFileStore(Path.of(IDEMPOTENCY_STORE_FILE), IDEMPOTENCY_TTL_SECONDS * 1000)
+                    : null;
+            this.idempotentActivities = new IdempotentTransactionActivities(activities,
+                    new IdempotencyCache(IDEMPOTENCY_TTL_SECONDS * 1000, IDEMPOTENCY_MAX_ENTRIES, store));
+            activities = idempotentActivities;
+        } else {
+            this.idempotentActivities = null;
+        }
+        for (Worker worker : workers) {
+            worker.registerActivitiesImplementations(activities);
+        }
     }
 
     private void startWorker() {
         if (!workerRunning) {
             factory.start();
             workerRunning = true;
-            System.out.println("Worker started on task queue: " + TASK_QUEUE);
+            System.out.println("Worker started on task queues: " + TaskQueueRouter.getTaskQueues());
+
+            // Processors are long-lived, start them once so the first transactions don't pay for the start.
+            // Runs that find their processor missing still start it through update-with-start
+            try {
+                WorkflowRunClient.warmTransactionProcessors(client);
+            } catch (Exception e) {
+                System.out.println("Failed to start transaction processors: " + e.getMessage());
+            }
         }
     }
 
-    private Map<String, Object> getWorkerStatus() {
-        return Map.of(
-                "status", workerRunning ? "running" : "stopped",
-                "taskQueue", TASK_QUEUE
+    // Budget of one scenario's run: the one the request asked for, else the configured default if the
+    // scenario honors it
+    private static long updateBudgetFor(String wfType, Long requestedBudgetMs) {
+        if (requestedBudgetMs != null) {
+            return requestedBudgetMs;
+        }
+        return BUDGETED_SCENARIOS.contains(wfType) ? UPDATE_BUDGET_MS : 0L;
+    }
+
+    // Runs the arm the router picked for an Adaptive run, with the budget it would get on its own, and
+    // feeds back the latency the caller saw
+    private WorkflowExecutionResult runAdaptive(String arm, String workflowId, TransactionRequest txRequest,
+                                                Long requestedBudgetMs) {
+        TransactionRequest armRequest = new TransactionRequest(
+                txRequest.getSourceAccount(),
+                txRequest.getTargetAccount(),
+                txRequest.getAmount(),
+                updateBudgetFor(arm, requestedBudgetMs),
+                txRequest.getRequestKey()
         );
+        WorkflowExecutionResult result;
+        try {
+            result = runScenario(arm, workflowId, armRequest);
+        } catch (RuntimeException e) {
+            adaptiveRouter.observe(arm, 0, false);
+            throw e;
+        }
+        boolean completed =
+                result.getExecutionStatus() == WorkflowExecutionResult.WorkflowExecutionStatus.COMPLETED;
+        adaptiveRouter.observe(arm, result.getCallerLatencyMs(), completed);
+        return result.withRoutedScenario(arm);
+    }
+
+    private WorkflowExecutionResult runScenario(String wfType, String workflowId, TransactionRequest txRequest) {
+        switch (wfType) {
+            case "RegularActivities":
+                return WorkflowRunClient.runWorkflow(
+                        client,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "UpdateWithStartRegularActivities":
+            case "UpdateWithStartRegularActivitiesAccepted":
+                return WorkflowRunClient.runWorkflowWithUpdateWithStart(
+                        client,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "LocalActivities":
+                return WorkflowRunClient.runWorkflowLocal(
+                        client,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "UpdateWithStartLocalActivities":
+            case "UpdateWithStartLocalActivitiesAccepted":
+                return WorkflowRunClient.runWorkflowWithUpdateWithStartLocal(
+                        client,
+                        TransactionWorkflowLocalBeforeUpdate.class,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "UpdateWithStartParallelLocalActivities":
+                return WorkflowRunClient.runWorkflowWithUpdateWithStartLocal(
+                        client,
+                        TransactionWorkflowParallel.class,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "EagerLocalActivities":
+                return WorkflowRunClient.runWorkflowLocal(
+                        client,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            case "TransactionProcessor":
+                return WorkflowRunClient.runTransactionProcessor(
+                        client,
+                        wfType,
+                        workflowId,
+                        txRequest,
+                        serverInfo
+                );
+            default:
+                throw new IllegalArgumentException("Invalid workflow type: " + wfType);
+        }
+    }
+
+    private Map<String, Object> getWorkerStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("status", workerRunning ? "running" : "stopped");
+        status.put("taskQueues", TaskQueueRouter.getTaskQueues());
+        status.put("asyncSettlement", ASYNC_SETTLEMENT);
+        if (ledger != null) {
+            status.put("ledger", ledger.getStats());
+        }
+        if (coalescingActivities != null) {
+            status.put("activityCoalescing", coalescingActivities.getStats());
+        }
+        if (idempotentActivities != null) {
+            status.put("idempotency", idempotentActivities.getStats());
+        }
+        return status;
     }
 
     public static void main(String[] args) throws FileNotFoundException, SSLException {
@@ -104,21 +403,209 @@ public class CallerAPI {
             ctx.json(callerAPI.getWorkerStatus());
         });
 
-        // Get all workflow results
-        app.get("/workflows", ctx -> {
-            List<WorkflowResponse> responses = callerAPI.resultsStore.getAllWorkflowResponses();
+        // Raw vs encoded payload bytes and codec time per scenario
+        app.get("/stats/payloads", ctx -> {
+            ctx.json(TemporalClient.getPayloadCodecStats());
+        });
+
+        // Simulated activity latency: current profiles and what was injected so far
+        app.get("/config/latency", ctx -> {
+            ctx.json(callerAPI.latencySimulator.getStats());
+        });
+
+        // Replace the profiles of the listed methods, e.g. "initTransaction=pareto:scale=10,shape=1.5"
+        app.put("/config/latency", ctx -> {
+            try {
+                callerAPI.latencySimulator.configure(ctx.body());
+                ctx.json(callerAPI.latencySimulator.getStats());
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+            }
+        });
+
+        // Back to the flat default delays
+        app.delete("/config/latency", ctx -> {
+            callerAPI.latencySimulator.reset();
+            ctx.json(callerAPI.latencySimulator.getStats());
+        });
+
+        // Most recent spans across all workflows, newest first
+        app.get("/traces", ctx -> {
+            if (callerAPI.traceBuffer == null) {
+                ctx.status(404).result("Tracing is disabled");
+                return;
+            }
+            int limit = 200;
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    // Invalid limit parameter, just use the default
+                }
+            }
+            ctx.json(callerAPI.traceBuffer.recent(limit));
+        });
+
+        // Every span still buffered for one workflow, in start order
+        app.get("/traces/{workflowId}", ctx -> {
+            if (callerAPI.traceBuffer == null) {
+                ctx.status(404).result("Tracing is disabled");
+                return;
+            }
+            ctx.json(callerAPI.traceBuffer.forWorkflow(ctx.pathParam("workflowId")));
+        });
+
+        // History footprint of the sampled runs per scenario, next to their latency
+        app.get("/stats/history", ctx -> {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("sampler", callerAPI.historySampler.getStats());
+            stats.put("scenarios", callerAPI.resultsStore.getHistoryAggregates());
+            ctx.json(stats);
+        });
 
-            String limit = ctx.queryParam("limit");
-            if (limit != null) {
+        // Latency distribution per scenario, computed from the columnar samples of every run
+        app.get("/stats/samples", ctx -> {
+            ctx.json(callerAPI.sampleStore.summaries());
+        });
+
+        // Queue depth, rejections and in-flight workflows of the admission controller
+        app.get("/stats/admission", ctx -> {
+            ctx.json(callerAPI.admission.getStats());
+        });
+
+        // Latency estimate per scenario of the adaptive router and where it sent runs over time
+        app.get("/stats/adaptive", ctx -> {
+            ctx.json(callerAPI.adaptiveRouter.getStats());
+        });
+
+        // Throughput and latency percentiles of the last 1, 10 and 60 seconds per scenario
+        app.get("/stats/live", ctx -> {
+            ctx.json(callerAPI.liveMetrics.snapshot());
+        });
+
+        // The same rolling windows per task queue, to see how throughput scales with the shard count
+        app.get("/stats/shards", ctx -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("taskQueues", TaskQueueRouter.getTaskQueues());
+            stats.put("shards", callerAPI.shardMetrics.snapshot());
+            ctx.json(stats);
+        });
+
+        // Individual samples of a scenario, paged with offset and limit
+        app.get("/stats/samples/{scenario}", ctx -> {
+            ScenarioSamples samples = callerAPI.sampleStore.get(ctx.pathParam("scenario"));
+            if (samples == null) {
+                ctx.status(404).result("No samples for scenario");
+                return;
+            }
+            String offsetParam = ctx.queryParam("offset");
+            String limitParam = ctx.queryParam("limit");
+            int offset;
+            int limit;
+            try {
+                offset = offsetParam != null ? Integer.parseInt(offsetParam) : 0;
+                limit = limitParam != null ? Integer.parseInt(limitParam) : 100;
+            } catch (NumberFormatException e) {
+                ctx.status(400).result("Invalid offset or limit");
+                return;
+            }
+
+            // Strings and URLs only exist for the rows in the page
+            List<Map<String, Object>> page = new ArrayList<>();
+            for (ScenarioSamples.Sample sample : samples.range(offset, limit)) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                if ("TransactionProcessor".equals(sample.getScenario())) {
+                    // The transaction is an update on a shared processor, it has no workflow of its own
+                    row.put("updateId", WorkflowRunClient.workflowIdOf(sample.getRunKey()));
+                } else {
+                    String workflowId = WorkflowRunClient.workflowIdOf(sample.getRunKey());
+                    row.put("workflowId", workflowId);
+                    row.put("workflowUrl", callerAPI.serverInfo.getWorkflowUrl(workflowId));
+                }
+                row.put("updateResponseLatencyMs", sample.getUpdateLatencyMs());
+                row.put("workflowResponseLatencyMs", sample.getWorkflowLatencyMs());
+                row.put("executionTimestamp", Instant.ofEpochMilli(sample.getEpochMillis()).toString());
+                row.put("executionStatus", sample.isCompleted() ? "COMPLETED" : "FAILED");
+                page.add(row);
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("scenario", samples.getScenario());
+            body.put("total", samples.size());
+            body.put("offset", offset);
+            body.put("samples", page);
+            ctx.json(body);
+        });
+
+        // Archive the histories of the stored runs so ReplayBenchmark can replay them
+        app.post("/histories/capture", ctx -> {
+            int limit = Integer.MAX_VALUE;
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
                 try {
-                    int limitNum = Integer.parseInt(limit);
-                    responses = callerAPI.resultsStore.getRecentWorkflowResponses(limitNum);
+                    limit = Integer.parseInt(limitParam);
                 } catch (NumberFormatException e) {
-                    // Invalid limit parameter, just use all responses
+                    ctx.status(400).result("Invalid limit: " + limitParam);
+                    return;
                 }
             }
 
-            ctx.json(responses);
+            List<String> workflowIds = new ArrayList<>();
+            for (WorkflowResponse response : callerAPI.resultsStore.getAllWorkflowResponses()) {
+                for (WorkflowExecutionResult result : response.getResults()) {
+                    if (result.getWorkflowId() != null) {
+                        workflowIds.add(result.getWorkflowId());
+                    }
+                }
+            }
+            ctx.json(callerAPI.historyArchive.capture(callerAPI.client, workflowIds, limit));
+        });
+
+        // Page through workflow results in ID order, streamed so the response doesn't need memory
+        // for every stored result. Pass the returned nextCursor as cursor to get the next page.
+        app.get("/workflows", ctx -> {
+            int limit = DEFAULT_WORKFLOWS_PAGE_SIZE;
+            String limitParam = ctx.queryParam("limit");
+            if (limitParam != null) {
+                try {
+                    limit = Integer.parseInt(limitParam);
+                } catch (NumberFormatException e) {
+                    ctx.status(400).result("Invalid limit: " + limitParam);
+                    return;
+                }
+                if (limit < 1) {
+                    ctx.status(400).result("Invalid limit: " + limitParam + ", must be at least 1");
+                    return;
+                }
+            }
+
+            // Most recent run first by default, as before paging; order=id pages in request ID order
+            String order = ctx.queryParam("order") == null ? "recent" : ctx.queryParam("order");
+            if (!order.equals("recent") && !order.equals("id")) {
+                ctx.status(400).result("Invalid order: " + order + ", must be recent or id");
+                return;
+            }
+
+            WorkflowResponsePage page;
+            try {
+                page = order.equals("id")
+                        ? callerAPI.resultsStore.getPage(ctx.queryParam("cursor"), limit)
+                        : callerAPI.resultsStore.getRecentPage(ctx.queryParam("cursor"), limit);
+            } catch (IllegalArgumentException e) {
+                ctx.status(400).result(e.getMessage());
+                return;
+            }
+            if ("ndjson".equals(ctx.queryParam("format"))) {
+                if (page.getNextCursor() != null) {
+                    ctx.header("X-Next-Cursor", page.getNextCursor());
+                }
+                ctx.contentType("application/x-ndjson");
+                WorkflowResponseWriter.writeNdjson(page.getResponses(), ctx.outputStream());
+            } else {
+                ctx.contentType("application/json");
+                WorkflowResponseWriter.writeJson(page.getResponses(), page.getNextCursor(), ctx.outputStream());
+            }
         });
 
         // Get specific workflow - note the {id} syntax
@@ -127,7 +614,14 @@ public class CallerAPI {
             WorkflowResponse response = callerAPI.resultsStore.getWorkflowResponse(workflowId);
 
             if (response != null) {
-                ctx.json(response);
+                // Unchanged responses are served from bytes serialized once per version
+                WorkflowResponseCache.CachedResponse cached = callerAPI.responseCache.get(response);
+                ctx.header("ETag", cached.getEtag());
+                if (cached.matches(ctx.header("If-None-Match"))) {
+                    ctx.status(304);
+                    return;
+                }
+                ctx.contentType("application/json").result(cached.getJson());
             } else {
                 ctx.status(404).result("Workflow not found");
             }
@@ -137,71 +631,68 @@ public class CallerAPI {
             WorkflowRequest request = ctx.bodyAsClass(WorkflowRequest.class);
             List<WorkflowExecutionResult> results = new ArrayList<>();
 
-            for (int i = 1; i <= request.getIterations(); i++) {
-                TransactionRequest txRequest = new TransactionRequest(
-                        request.getParams().getSourceAccount(),
-                        request.getParams().getTargetAccount(),
-                        request.getParams().getAmount()
-                );
+            long updateBudgetMs = updateBudgetFor(request.getWf_type(), request.getUpdate_budget_ms());
 
+            for (int i = 1; i <= request.getIterations(); i++) {
                 WorkflowExecutionResult result = null;
 
                 String wfType = request.getWf_type();
                 String workflowId = request.getId() + "-"+ wfType+ "-iteration-" + i;
 
-                switch (wfType) {
-                    case "RegularActivities":
-                        result = WorkflowRunClient.runWorkflow(
-                                callerAPI.client,
-                                wfType,
-                                workflowId,
-                                txRequest,
-                                callerAPI.serverInfo
-                        );
-                        break;
-                    case "UpdateWithStartRegularActivities":
-                        result = WorkflowRunClient.runWorkflowWithUpdateWithStart(
-                                callerAPI.client,
-                                wfType,
-                                workflowId,
-                                txRequest,
-                                callerAPI.serverInfo
-                        );
-                        break;
-                    case "LocalActivities":
-                        result = WorkflowRunClient.runWorkflowLocal(
-                                callerAPI.client,
-                                wfType,
-                                workflowId,
-                                txRequest,
-                                callerAPI.serverInfo
-                        );
-                        break;
-                    case "UpdateWithStartLocalActivities":
-                        result = WorkflowRunClient.runWorkflowWithUpdateWithStartLocal(
-                                callerAPI.client,
-                                wfType,
-                                workflowId,
-                                txRequest,
-                                callerAPI.serverInfo
-                        );
-                        break;
-                    case "EagerLocalActivities":
-                        result = WorkflowRunClient.runWorkflowLocal(
-                                callerAPI.client,
-                                wfType,
-                                workflowId,
-                                txRequest,
-                                callerAPI.serverInfo
-                        );
-                        break;
-                    default:
-                        throw new IllegalArgumentException("Invalid workflow type: " + wfType);
+                // The workflow ID doubles as the request key, retries of this iteration reuse it
+                TransactionRequest txRequest = new TransactionRequest(
+                        request.getParams().getSourceAccount(),
+                        request.getParams().getTargetAccount(),
+                        request.getParams().getAmount(),
+                        updateBudgetMs,
+                        workflowId
+                );
+
+                // An Adaptive run is admitted against the scenario it is routed to, that is what it starts
+                boolean adaptive = "Adaptive".equals(wfType);
+                String scenario = adaptive ? callerAPI.adaptiveRouter.choose() : wfType;
+                try {
+                    callerAPI.admission.acquire(scenario);
+                } catch (AdmissionController.RejectedException e) {
+                    if (adaptive) {
+                        callerAPI.adaptiveRouter.cancel(scenario);
+                    }
+                    // A rejected request leaves nothing stored, its earlier iterations are rolled back
+                    callerAPI.resultsStore.removeWorkflowRuns(request.getId(), results);
+                    Map<String, Object> rejection = new LinkedHashMap<>();
+                    rejection.put("error", e.getMessage());
+                    rejection.put("completedIterations", i - 1);
+                    rejection.put("iterations", request.getIterations());
+                    ctx.status(429).header("Retry-After", "1").json(rejection);
+                    return;
+                }
+                try {
+                    result = adaptive
+                            ? callerAPI.runAdaptive(scenario, workflowId, txRequest, request.getUpdate_budget_ms())
+                            : callerAPI.runScenario(wfType, workflowId, txRequest);
+                } finally {
+                    callerAPI.admission.release(scenario);
                 }
 
                 // Store each result
                 callerAPI.resultsStore.addWorkflowRun(request.getId(), request.getIterations(),
                         request.getWf_type(), result);
+                callerAPI.historySampler.maybeSample(request.getId(), wfType, result);
+                boolean completed =
+                        result.getExecutionStatus() == WorkflowExecutionResult.WorkflowExecutionStatus.COMPLETED;
+                // The Accepted scenarios answer the caller at acceptance, the update result comes later
+                double updateLatencyMs = result.getUpdateAcceptedLatencyMs() > 0
+                        ? result.getUpdateAcceptedLatencyMs()
+                        : result.getUpdateResponseLatencyMs();
+                callerAPI.sampleStore.record(wfType, request.getId(), i,
+                        result.getExecutionEpochMillis(),
+                        updateLatencyMs, result.getWorkflowResponseLatencyMs(), completed);
+                callerAPI.liveMetrics.record(wfType,
+                        updateLatencyMs, result.getWorkflowResponseLatencyMs(), completed);
+                if (result.getTaskQueue() != null) {
+                    callerAPI.shardMetrics.record(result.getTaskQueue(),
+                            updateLatencyMs, result.getWorkflowResponseLatencyMs(), completed);
+                }
                 results.add(result);
             }
 
@@ -0,0 +1,68 @@
+package io.temporal.latencyoptimization.api;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.common.WorkflowExecutionHistory;
+import io.temporal.latencyoptimization.WorkflowRunClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the histories of benchmark runs as JSON files, one directory per scenario, so that
+ * ReplayBenchmark can replay them offline against the current workflow code.
+ */
+public class HistoryArchive {
+    private static final Logger log = LoggerFactory.getLogger(HistoryArchive.class);
+
+    private final Path directory;
+
+    public HistoryArchive(Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // Fetches and writes up to limit histories that aren't archived yet
+    public Map<String, Object> capture(WorkflowClient client, List<String> workflowIds, int limit) {
+        int captured = 0;
+        int skipped = 0;
+        int failed = 0;
+        for (String workflowId : workflowIds) {
+            if (captured >= limit) {
+                break;
+            }
+            Path file = directory
+                    .resolve(WorkflowRunClient.scenarioOf(workflowId))
+                    .resolve(workflowId + ".json");
+            if (Files.exists(file)) {
+                skipped++;
+                continue;
+            }
+            try {
+                WorkflowExecutionHistory history = client.fetchHistory(workflowId);
+                Files.createDirectories(file.getParent());
+                Files.writeString(file, history.toJson(true), StandardCharsets.UTF_8);
+                captured++;
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to archive history of {}: {}", workflowId, e.getMessage());
+                failed++;
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("directory", directory.toAbsolutePath().toString());
+        result.put("captured", captured);
+        result.put("skipped", skipped);
+        result.put("failed", failed);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+package io.temporal.latencyoptimization.api;
+
+import io.temporal.client.WorkflowClient;
+import io.temporal.common.WorkflowExecutionHistory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fetches the history of a sample of completed runs in the background and annotates their stored
+ * results with its size, so the timed request path never waits on a history fetch.
+ */
+public class HistorySampler {
+    private static final Logger log = LoggerFactory.getLogger(HistorySampler.class);
+    // Fetches waiting for a thread. Once full, new samples are dropped rather than queued without
+    // bound behind a slow frontend
+    private static final int QUEUE_CAPACITY = 1000;
+
+    private final WorkflowClient client;
+    private final WorkflowResultsStore resultsStore;
+    private final double sampleRate;
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private final ExecutorService executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+            r -> {
+                Thread t = new Thread(r, "history-sampler");
+                t.setDaemon(true);
+                return t;
+            },
+            (r, executor) -> dropped.increment());
+
+    public HistorySampler(WorkflowClient client, WorkflowResultsStore resultsStore, double sampleRate) {
+        this.client = client;
+        this.resultsStore = resultsStore;
+        this.sampleRate = sampleRate;
+    }
+
+    // Samples runs of their own workflow; a processor's history spans many transactions
+    public void maybeSample(String responseId, String scenario, WorkflowExecutionResult result) {
+        if (result == null
+                || result.getExecutionStatus() != WorkflowExecutionResult.WorkflowExecutionStatus.COMPLETED
+                || "TransactionProcessor".equals(scenario)
+                || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+
+        String workflowId = result.getWorkflowId();
+        executor.execute(() -> {
+            try {
+                WorkflowExecutionHistory history = client.fetchHistory(workflowId);
+                resultsStore.annotateHistory(responseId, workflowId, HistoryStats.of(history));
+                sampled.increment();
+            } catch (RuntimeException e) {
+                log.warn("Failed to fetch history of {}: {}", workflowId, e.getMessage());
+                failed.increment();
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sampleRate", sampleRate);
+        stats.put("sampled", sampled.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,73 @@
+package io.temporal.latencyoptimization.api;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.temporal.api.enums.v1.EventType;
+import io.temporal.api.history.v1.HistoryEvent;
+import io.temporal.common.WorkflowExecutionHistory;
+
+// History footprint of one workflow run
+public class HistoryStats {
+    private final int eventCount;
+    private final long historyBytes;
+    private final int workflowTaskCount;
+    private final int activityTaskCount;
+    private final int localActivityCount;
+
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    public HistoryStats(
+            @JsonProperty("eventCount") int eventCount,
+            @JsonProperty("historyBytes") long historyBytes,
+            @JsonProperty("workflowTaskCount") int workflowTaskCount,
+            @JsonProperty("activityTaskCount") int activityTaskCount,
+            @JsonProperty("localActivityCount") int localActivityCount) {
+        this.eventCount = eventCount;
+        this.historyBytes = historyBytes;
+        this.workflowTaskCount = workflowTaskCount;
+        this.activityTaskCount = activityTaskCount;
+        this.localActivityCount = localActivityCount;
+    }
+
+    public static HistoryStats of(WorkflowExecutionHistory history) {
+        int workflowTasks = 0;
+        int activityTasks = 0;
+        int localActivities = 0;
+        for (HistoryEvent event : history.getEvents()) {
+            if (event.getEventType() == EventType.EVENT_TYPE_WORKFLOW_TASK_SCHEDULED) {
+                workflowTasks++;
+            } else if (event.getEventType() == EventType.EVENT_TYPE_ACTIVITY_TASK_SCHEDULED) {
+                activityTasks++;
+            } else if (event.getEventType() == EventType.EVENT_TYPE_MARKER_RECORDED) {
+                // Local activity results are recorded as markers
+                localActivities++;
+            }
+        }
+        return new HistoryStats(history.getEvents().size(), history.getHistory().getSerializedSize(),
+                workflowTasks, activityTasks, localActivities);
+    }
+
+    @JsonProperty("eventCount")
+    public int getEventCount() {
+        return eventCount;
+    }
+
+    @JsonProperty("historyBytes")
+    public long getHistoryBytes() {
+        return historyBytes;
+    }
+
+    @JsonProperty("workflowTaskCount")
+    public int getWorkflowTaskCount() {
+        return workflowTaskCount;
+    }
+
+    @JsonProperty("activityTaskCount")
+    public int getActivityTaskCount() {
+        return activityTaskCount;
+    }
+
+    @JsonProperty("localActivityCount")
+    public int getLocalActivityCount() {
+        return localActivityCount;
+    }
+}
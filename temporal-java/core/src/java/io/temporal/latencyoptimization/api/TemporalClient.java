@@ -23,6 +23,15 @@ import io.temporal.client.WorkflowClient;
 import io.temporal.client.WorkflowClientOptions;
 import io.temporal.client.schedules.ScheduleClient;
 import io.temporal.client.schedules.ScheduleClientOptions;
+import io.temporal.common.converter.CodecDataConverter;
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.common.converter.PayloadConverter;
+import io.temporal.common.interceptors.WorkflowClientInterceptor;
+import io.temporal.latencyoptimization.WorkflowRunClient;
+import io.temporal.latencyoptimization.codec.CompressionPayloadCodec;
+import io.temporal.latencyoptimization.codec.PayloadCodecStats;
+import io.temporal.latencyoptimization.transaction.TransactionPayloadConverter;
 import io.temporal.serviceclient.SimpleSslContextBuilder;
 import io.temporal.serviceclient.WorkflowServiceStubs;
 import io.temporal.serviceclient.WorkflowServiceStubsOptions;
@@ -30,9 +39,24 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.InputStream;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import javax.net.ssl.SSLException;
 
 public class TemporalClient {
+    // Write Transaction, TransactionRequest and TxResult payloads in the compact binary layout. Off by
+    // default, binary payloads can't be read in the Temporal UI or CLI
+    private static final boolean BINARY_PAYLOADS =
+            Boolean.parseBoolean(System.getenv().getOrDefault("TEMPORAL_BINARY_PAYLOADS", "false"));
+    // Optional payload compression: none, lz4 or zstd
+    private static final String PAYLOAD_CODEC =
+            System.getenv().getOrDefault("TEMPORAL_PAYLOAD_CODEC", "none").toLowerCase(Locale.ROOT);
+    private static final int PAYLOAD_CODEC_THRESHOLD_BYTES =
+            Integer.parseInt(System.getenv().getOrDefault("TEMPORAL_PAYLOAD_CODEC_THRESHOLD_BYTES", "256"));
+    private static final PayloadCodecStats PAYLOAD_CODEC_STATS =
+            "none".equals(PAYLOAD_CODEC) ? null : new PayloadCodecStats(PAYLOAD_CODEC);
+
     public static WorkflowServiceStubs getWorkflowServiceStubs(ServerInfo serverInfo)
             throws FileNotFoundException, SSLException {
         WorkflowServiceStubsOptions.Builder workflowServiceStubsOptionsBuilder =
@@ -65,6 +89,11 @@ public class TemporalClient {
     }
 
     public static WorkflowClient get(ServerInfo serverInfo) throws FileNotFoundException, SSLException {
+        return get(serverInfo, new WorkflowClientInterceptor[0]);
+    }
+
+    public static WorkflowClient get(ServerInfo serverInfo, WorkflowClientInterceptor... interceptors)
+            throws FileNotFoundException, SSLException {
         // TODO support local server
         // Get worker to poll the common task queue.
         // gRPC stubs wrapper that talks to the local docker instance of temporal service.
@@ -75,11 +104,41 @@ public class TemporalClient {
         WorkflowClientOptions.Builder builder = WorkflowClientOptions.newBuilder();
 
         System.out.println("<<<<SERVER INFO>>>>:\n " + serverInfo.getServerInfo());
-        WorkflowClientOptions clientOptions = builder.setNamespace(serverInfo.getNamespace()).build();
+        WorkflowClientOptions clientOptions = builder.setNamespace(serverInfo.getNamespace())
+                .setDataConverter(getDataConverter())
+                .setInterceptors(interceptors)
+                .build();
 
         // client that can be used to start and signal workflows
         WorkflowClient client = WorkflowClient.newInstance(service, clientOptions);
         return client;
     }
 
+    public static DataConverter getDataConverter() {
+        DataConverter converter = BINARY_PAYLOADS ? newBinaryDataConverter() : DefaultDataConverter.newDefaultInstance();
+        if (PAYLOAD_CODEC_STATS == null) {
+            return converter;
+        }
+
+        CompressionPayloadCodec codec = new CompressionPayloadCodec(
+                CompressionPayloadCodec.Algorithm.valueOf(PAYLOAD_CODEC.toUpperCase(Locale.ROOT)),
+                PAYLOAD_CODEC_THRESHOLD_BYTES,
+                PAYLOAD_CODEC_STATS,
+                WorkflowRunClient::scenarioOf);
+        return new CodecDataConverter(converter, List.of(codec));
+    }
+
+    public static Map<String, Object> getPayloadCodecStats() {
+        return PAYLOAD_CODEC_STATS != null ? PAYLOAD_CODEC_STATS.getStats() : Map.of("codec", "none");
+    }
+
+    public static DataConverter newBinaryDataConverter() {
+        // The binary converter has to come first, the JSON converter accepts every type
+        PayloadConverter[] standard = DefaultDataConverter.STANDARD_PAYLOAD_CONVERTERS;
+        PayloadConverter[] converters = new PayloadConverter[standard.length + 1];
+        converters[0] = new TransactionPayloadConverter();
+        System.arraycopy(standard, 0, converters, 1, standard.length);
+        return new DefaultDataConverter(converters);
+    }
+
 }
\ No newline at end of file
@@ -1,18 +1,30 @@
 package io.temporal.latencyoptimization.api;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.temporal.latencyoptimization.transaction.TxResult;
 
+import java.time.Instant;
+
 public class WorkflowExecutionResult {
     private final String workflowId;
     private final double updateResponseLatencyMs;
     private final double workflowResponseLatencyMs;
     private final TxResult updateResult;
     private final TxResult workflowResult;
-    private final String executionTimestamp;
+    // Kept as epoch millis, the ISO string only exists while the result is serialized
+    private final long executionEpochMillis;
     private final WorkflowExecutionStatus executionStatus;
     private final String workflowUrl;
+    // Null unless this run's history was sampled
+    private final HistoryStats historyStats;
+    // Task queue the run was routed to
+    private final String taskQueue;
+    // Scenario an Adaptive run was routed to, null for the other scenarios
+    private final String routedScenario;
+    // Until the update was durably accepted, only measured by the scenarios that wait for ACCEPTED
+    private final double updateAcceptedLatencyMs;
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public WorkflowExecutionResult(
@@ -23,15 +35,41 @@ public class WorkflowExecutionResult {
             @JsonProperty("workflowResult") TxResult workflowResult,
             @JsonProperty("executionTimestamp") String executionTimestamp,
             @JsonProperty("executionStatus") WorkflowExecutionStatus executionStatus,
-            @JsonProperty("workflowUrl") String workflowUrl){
+            @JsonProperty("workflowUrl") String workflowUrl,
+            @JsonProperty("historyStats") HistoryStats historyStats,
+            @JsonProperty("taskQueue") String taskQueue,
+            @JsonProperty("routedScenario") String routedScenario,
+            @JsonProperty("updateAcceptedLatencyMs") double updateAcceptedLatencyMs){
+        this(workflowId, updateResponseLatencyMs, workflowResponseLatencyMs, updateResult, workflowResult,
+                Instant.parse(executionTimestamp).toEpochMilli(), executionStatus, workflowUrl, historyStats,
+                taskQueue, routedScenario, updateAcceptedLatencyMs);
+    }
+
+    private WorkflowExecutionResult(
+            String workflowId,
+            double updateResponseLatencyMs,
+            double workflowResponseLatencyMs,
+            TxResult updateResult,
+            TxResult workflowResult,
+            long executionEpochMillis,
+            WorkflowExecutionStatus executionStatus,
+            String workflowUrl,
+            HistoryStats historyStats,
+            String taskQueue,
+            String routedScenario,
+            double updateAcceptedLatencyMs) {
         this.workflowId = workflowId;
         this.updateResponseLatencyMs = updateResponseLatencyMs;
         this.workflowResponseLatencyMs = workflowResponseLatencyMs;
         this.updateResult = updateResult;
         this.workflowResult = workflowResult;
-        this.executionTimestamp = executionTimestamp;
+        this.executionEpochMillis = executionEpochMillis;
         this.executionStatus = executionStatus;
         this.workflowUrl = workflowUrl;
+        this.historyStats = historyStats;
+        this.taskQueue = taskQueue;
+        this.routedScenario = routedScenario;
+        this.updateAcceptedLatencyMs = updateAcceptedLatencyMs;
     }
 
     @JsonProperty("workflowId")
@@ -61,7 +99,12 @@ public class WorkflowExecutionResult {
 
     @JsonProperty("executionTimestamp")
     public String getExecutionTimestamp() {
-        return executionTimestamp;
+        return Instant.ofEpochMilli(executionEpochMillis).toString();
+    }
+
+    @JsonIgnore
+    public long getExecutionEpochMillis() {
+        return executionEpochMillis;
     }
 
     @JsonProperty("executionStatus")
@@ -74,6 +117,49 @@ public class WorkflowExecutionResult {
         return workflowUrl;
     }
 
+    @JsonProperty("historyStats")
+    public HistoryStats getHistoryStats() {
+        return historyStats;
+    }
+
+    @JsonProperty("taskQueue")
+    public String getTaskQueue() {
+        return taskQueue;
+    }
+
+    @JsonProperty("routedScenario")
+    public String getRoutedScenario() {
+        return routedScenario;
+    }
+
+    @JsonProperty("updateAcceptedLatencyMs")
+    public double getUpdateAcceptedLatencyMs() {
+        return updateAcceptedLatencyMs;
+    }
+
+    // When the caller got its answer: the update's ack or result, or the workflow result without an update
+    @JsonIgnore
+    public double getCallerLatencyMs() {
+        if (updateAcceptedLatencyMs > 0) {
+            return updateAcceptedLatencyMs;
+        }
+        return updateResponseLatencyMs > 0 ? updateResponseLatencyMs : workflowResponseLatencyMs;
+    }
+
+    // Copy of this result annotated with its history footprint
+    public WorkflowExecutionResult withHistoryStats(HistoryStats historyStats) {
+        return new WorkflowExecutionResult(workflowId, updateResponseLatencyMs, workflowResponseLatencyMs,
+                updateResult, workflowResult, executionEpochMillis, executionStatus, workflowUrl, historyStats,
+                taskQueue, routedScenario, updateAcceptedLatencyMs);
+    }
+
+    // Copy of this result marked with the scenario the adaptive router picked for it
+    public WorkflowExecutionResult withRoutedScenario(String routedScenario) {
+        return new WorkflowExecutionResult(workflowId, updateResponseLatencyMs, workflowResponseLatencyMs,
+                updateResult, workflowResult, executionEpochMillis, executionStatus, workflowUrl, historyStats,
+                taskQueue, routedScenario, updateAcceptedLatencyMs);
+    }
+
     // Builder pattern for easier object creation
     public static class Builder {
         private String workflowId;
@@ -81,12 +167,14 @@ public class WorkflowExecutionResult {
         private double workflowResponseLatencyMs;
         private TxResult updateResult;
         private TxResult workflowResult;
-        private String executionTimestamp;
+        private long executionEpochMillis;
         private WorkflowExecutionStatus executionStatus;
         private String workflowUrl;
+        private String taskQueue;
+        private double updateAcceptedLatencyMs;
 
         public Builder() {
-            this.executionTimestamp = java.time.Instant.now().toString();
+            this.executionEpochMillis = System.currentTimeMillis();
             this.executionStatus = WorkflowExecutionStatus.COMPLETED;
         }
 
@@ -95,6 +183,11 @@ public class WorkflowExecutionResult {
             return this;
         }
 
+        public Builder updateAcceptedLatencyMs(double latency) {
+            this.updateAcceptedLatencyMs = latency;
+            return this;
+        }
+
         public Builder updateResponseLatencyMs(double latency) {
             this.updateResponseLatencyMs = latency;
             return this;
@@ -125,6 +218,11 @@ public class WorkflowExecutionResult {
             return this;
         }
 
+        public Builder taskQueue(String taskQueue) {
+            this.taskQueue = taskQueue;
+            return this;
+        }
+
         public WorkflowExecutionResult build() {
             return new WorkflowExecutionResult(
                     workflowId,
@@ -132,9 +230,13 @@ public class WorkflowExecutionResult {
                     workflowResponseLatencyMs,
                     updateResult,
                     workflowResult,
-                    executionTimestamp,
+                    executionEpochMillis,
                     executionStatus,
-                    workflowUrl
+                    workflowUrl,
+                    null,
+                    taskQueue,
+                    null,
+                    updateAcceptedLatencyMs
             );
         }
     }
@@ -6,6 +6,8 @@ public class WorkflowRequest {
     private String wf_type;
     private String task_queue;
     private int iterations;
+    // Overrides the scenario's default update latency budget, 0 disables it
+    private Long update_budget_ms;
 
     // Nested class for params
     public static class TransactionParams {
@@ -33,4 +35,6 @@ public class WorkflowRequest {
     public void setTask_queue(String task_queue) { this.task_queue = task_queue; }
     public int getIterations() { return iterations; }
     public void setIterations(int iterations) { this.iterations = iterations; }
+    public Long getUpdate_budget_ms() { return update_budget_ms; }
+    public void setUpdate_budget_ms(Long update_budget_ms) { this.update_budget_ms = update_budget_ms; }
 }
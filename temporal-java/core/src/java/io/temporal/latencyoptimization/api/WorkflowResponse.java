@@ -1,22 +1,60 @@
 package io.temporal.latencyoptimization.api;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class WorkflowResponse {
     private final int iterations;
     private final String workflow_type;
     private final String workflow_id;
-    private final List<WorkflowExecutionResult> results;
+    // Shared by the versions of this response, each one only reads its first resultCount slots. Slots
+    // below the count of a published version are never written again, so appending is O(1)
+    private final WorkflowExecutionResult[] results;
+    private final int resultCount;
+    private final long version;
 
     // Constructor
     public WorkflowResponse(int iterations,
                             String workflow_type,
                             String workflow_id,
-                            List<WorkflowExecutionResult> results) {
+                            List<WorkflowExecutionResult> results,
+                            long version) {
+        this(iterations, workflow_type, workflow_id, results.toArray(new WorkflowExecutionResult[0]),
+                results.size(), version);
+    }
+
+    private WorkflowResponse(int iterations,
+                             String workflow_type,
+                             String workflow_id,
+                             WorkflowExecutionResult[] results,
+                             int resultCount,
+                             long version) {
         this.iterations = iterations;
         this.workflow_type = workflow_type;
         this.workflow_id = workflow_id;
         this.results = results;
+        this.resultCount = resultCount;
+        this.version = version;
+    }
+
+    // Next version with the result appended. Only call it on the latest version, under the store's lock
+    WorkflowResponse append(WorkflowExecutionResult result, long version) {
+        WorkflowExecutionResult[] slots = results;
+        if (resultCount == slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(4, slots.length * 2));
+        }
+        slots[resultCount] = result;
+        return new WorkflowResponse(iterations, workflow_type, workflow_id, slots, resultCount + 1, version);
+    }
+
+    // Next version with the result at index replaced, on a copy since earlier versions share the slot
+    WorkflowResponse replace(int index, WorkflowExecutionResult result, long version) {
+        WorkflowExecutionResult[] slots = Arrays.copyOf(results, results.length);
+        slots[index] = result;
+        return new WorkflowResponse(iterations, workflow_type, workflow_id, slots, resultCount, version);
     }
 
     // Getters are required for JSON serialization
@@ -33,6 +71,12 @@ public class WorkflowResponse {
     }
 
     public List<WorkflowExecutionResult> getResults() {
-        return results;
+        return Collections.unmodifiableList(Arrays.asList(results).subList(0, resultCount));
+    }
+
+    // Store version this response was created at, every change creates a new response
+    @JsonIgnore
+    public long getVersion() {
+        return version;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,92 @@
+package io.temporal.latencyoptimization.api;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Serialized JSON of each stored response, reused until the store creates a newer version of it.
+// The web UI polls /workflows/{id} while a run is in progress, so most polls are a cache hit.
+public class WorkflowResponseCache {
+    // Versions restart with the process, the boot time keeps ETags of an earlier process from matching
+    private static final String BOOT_ID = Long.toHexString(System.currentTimeMillis());
+
+    // Least recently polled responses are dropped first, only runs still being polled need to stay
+    private final LinkedHashMap<String, CachedResponse> cache;
+
+    public WorkflowResponseCache(int maxEntries) {
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public CachedResponse get(WorkflowResponse response) throws IOException {
+        synchronized (cache) {
+            CachedResponse cached = cache.get(response.getWorkflowId());
+            if (cached != null && cached.version >= response.getVersion()) {
+                return cached;
+            }
+        }
+        // Serialized outside the lock, so polls of other runs don't wait for it
+        CachedResponse fresh = new CachedResponse(response.getVersion(), WorkflowResponseWriter.toBytes(response));
+        synchronized (cache) {
+            // A concurrent poll may have cached a newer version meanwhile, keep whichever is newer
+            return cache.merge(response.getWorkflowId(), fresh,
+                    (existing, created) -> existing.version >= created.version ? existing : created);
+        }
+    }
+
+    public void invalidate(String workflowId) {
+        synchronized (cache) {
+            cache.remove(workflowId);
+        }
+    }
+
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public static class CachedResponse {
+        private final long version;
+        private final byte[] json;
+        private final String etag;
+
+        CachedResponse(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+            this.etag = "\"" + BOOT_ID + "-" + version + "\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        // If-None-Match holds "*" or a comma-separated list of ETags, compared weakly, so W/ is ignored
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            if (ifNoneMatch.trim().equals("*")) {
+                return true;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
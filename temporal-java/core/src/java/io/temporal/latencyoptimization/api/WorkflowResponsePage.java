@@ -0,0 +1,22 @@
+package io.temporal.latencyoptimization.api;
+
+import java.util.List;
+
+// One page of GET /workflows and the cursor of the page after it, null on the last page
+public class WorkflowResponsePage {
+    private final List<WorkflowResponse> responses;
+    private final String nextCursor;
+
+    public WorkflowResponsePage(List<WorkflowResponse> responses, String nextCursor) {
+        this.responses = responses;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<WorkflowResponse> getResponses() {
+        return responses;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
@@ -0,0 +1,48 @@
+package io.temporal.latencyoptimization.api;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+
+// Streams workflow responses one at a time to the output, so the memory a response
+// needs doesn't grow with the number of stored results
+public class WorkflowResponseWriter {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+    public static byte[] toBytes(WorkflowResponse response) throws IOException {
+        return MAPPER.writeValueAsBytes(response);
+    }
+
+    // {"workflows": [...], "nextCursor": "..."}
+    public static void writeJson(Collection<WorkflowResponse> responses, String nextCursor, OutputStream out)
+            throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("workflows");
+            for (WorkflowResponse response : responses) {
+                MAPPER.writeValue(generator, response);
+            }
+            generator.writeEndArray();
+            generator.writeStringField("nextCursor", nextCursor);
+            generator.writeEndObject();
+        }
+    }
+
+    // One response per line, the next cursor goes in a header
+    public static void writeNdjson(Collection<WorkflowResponse> responses, OutputStream out) throws IOException {
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            for (WorkflowResponse response : responses) {
+                MAPPER.writeValue(generator, response);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+}
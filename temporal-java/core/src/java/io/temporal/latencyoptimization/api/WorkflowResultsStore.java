@@ -1,27 +1,48 @@
 package io.temporal.latencyoptimization.api;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.stream.Collectors;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 public class WorkflowResultsStore {
-    private final ConcurrentHashMap<String, WorkflowResponse> responses = new ConcurrentHashMap<>();
-
-    public void addWorkflowRun(String workflowId, int iterations, String workflowType, WorkflowExecutionResult result) {
-        responses.compute(workflowId, (key, existingResponse) -> {
-            if (existingResponse == null) {
-                // Create new response with initial result
-                List<WorkflowExecutionResult> results = new ArrayList<>();
-                results.add(result);
-                return new WorkflowResponse(iterations, workflowType, workflowId, results);
-            } else {
-                // Add to existing results
-                List<WorkflowExecutionResult> updatedResults = new ArrayList<>(existingResponse.getResults());
-                updatedResults.add(result);
-                return new WorkflowResponse(iterations, workflowType, workflowId, updatedResults);
-            }
-        });
+    // Sorted by ID so pages can resume after a cursor without copying the map
+    private final ConcurrentSkipListMap<String, WorkflowResponse> responses = new ConcurrentSkipListMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    // Request IDs by the sequence number of their latest run, newest first, so the most recent
+    // responses can be paged the same way. lastRunOf is only touched under the store's lock
+    private final ConcurrentSkipListMap<Long, String> recentRuns =
+            new ConcurrentSkipListMap<>(Collections.reverseOrder());
+    private final Map<String, Long> lastRunOf = new HashMap<>();
+    private long runSequence = 0;
+    // Serialized responses, dropped together with the results they were made from
+    private final WorkflowResponseCache responseCache;
+
+    public WorkflowResultsStore(WorkflowResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    // Writers are serialized so a response is only ever appended to in its latest version; readers
+    // don't lock, every version they can see is immutable
+    public synchronized void addWorkflowRun(String workflowId, int iterations, String workflowType,
+                                            WorkflowExecutionResult result) {
+        WorkflowResponse existingResponse = responses.get(workflowId);
+        if (existingResponse == null) {
+            existingResponse = new WorkflowResponse(iterations, workflowType, workflowId, List.of(), 0);
+        }
+        responses.put(workflowId, existingResponse.append(result, versions.incrementAndGet()));
+
+        Long previousRun = lastRunOf.put(workflowId, ++runSequence);
+        if (previousRun != null) {
+            recentRuns.remove(previousRun);
+        }
+        recentRuns.put(runSequence, workflowId);
     }
 
     public WorkflowResponse getWorkflowResponse(String workflowId) {
@@ -32,32 +53,152 @@ public class WorkflowResultsStore {
         return new ArrayList<>(responses.values());
     }
 
-    // Helper method to get the most recent workflow executions
-    public List<WorkflowResponse> getRecentWorkflowResponses(int limit) {
-        return responses.values().stream()
-                .sorted((a, b) -> {
-                    // Sort by most recent execution in the results
-                    return getLatestTimestamp(b).compareTo(getLatestTimestamp(a));
-                })
-                .limit(limit)
-                .collect(Collectors.toList());
+    // Up to limit responses with IDs after the cursor, null starts from the first ID. A copy rather
+    // than a view, so runs stored while the page streams can't change it
+    public WorkflowResponsePage getPage(String cursor, int limit) {
+        checkLimit(limit);
+        NavigableMap<String, WorkflowResponse> after = cursor == null ? responses : responses.tailMap(cursor, false);
+        List<WorkflowResponse> page = new ArrayList<>();
+        for (WorkflowResponse response : after.values()) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(response);
+        }
+        String lastId = page.isEmpty() ? null : page.get(page.size() - 1).getWorkflowId();
+        String nextCursor = lastId == null || responses.higherKey(lastId) == null ? null : lastId;
+        return new WorkflowResponsePage(page, nextCursor);
+    }
+
+    // Up to limit responses, most recent run first, older than the cursor. The cursor is the sequence
+    // number of the last run on the previous page, null starts from the most recent. A request that
+    // records another run while it is paged moves to the front, so it shows up on the next first page
+    public WorkflowResponsePage getRecentPage(String cursor, int limit) {
+        checkLimit(limit);
+        NavigableMap<Long, String> older = recentRuns;
+        if (cursor != null) {
+            try {
+                older = recentRuns.tailMap(Long.parseLong(cursor), false);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+        List<WorkflowResponse> page = new ArrayList<>();
+        long lastRun = 0;
+        for (Map.Entry<Long, String> run : older.entrySet()) {
+            if (page.size() == limit) {
+                break;
+            }
+            WorkflowResponse response = responses.get(run.getValue());
+            // Cleared after the index was read
+            if (response != null) {
+                page.add(response);
+                lastRun = run.getKey();
+            }
+        }
+        String nextCursor = page.isEmpty() || recentRuns.higherKey(lastRun) == null ? null : Long.toString(lastRun);
+        return new WorkflowResponsePage(page, nextCursor);
     }
 
-    // Helper to get the latest timestamp from a workflow response
-    private static String getLatestTimestamp(WorkflowResponse response) {
-        return response.getResults().stream()
-                .map(WorkflowExecutionResult::getExecutionTimestamp)
-                .max(String::compareTo)
-                .orElse("");
+    private static void checkLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be at least 1: " + limit);
+        }
+    }
+
+    // Remove the given runs of a request again, matched by workflow ID from the latest run back, since
+    // a repeated request appends runs with the same IDs. A request left without runs is removed
+    public synchronized void removeWorkflowRuns(String workflowId, List<WorkflowExecutionResult> runs) {
+        WorkflowResponse existingResponse = responses.get(workflowId);
+        if (existingResponse == null || runs.isEmpty()) {
+            return;
+        }
+        List<WorkflowExecutionResult> remaining = new ArrayList<>(existingResponse.getResults());
+        for (WorkflowExecutionResult run : runs) {
+            for (int i = remaining.size() - 1; i >= 0; i--) {
+                if (remaining.get(i).getWorkflowId().equals(run.getWorkflowId())) {
+                    remaining.remove(i);
+                    break;
+                }
+            }
+        }
+        if (remaining.isEmpty()) {
+            clearWorkflowResults(workflowId);
+            return;
+        }
+        responses.put(workflowId, new WorkflowResponse(existingResponse.getIterations(),
+                existingResponse.getScenario(), workflowId, remaining, versions.incrementAndGet()));
+    }
+
+    // Replace a stored run with the same run annotated with its history footprint
+    public synchronized void annotateHistory(String responseId, String workflowId, HistoryStats historyStats) {
+        WorkflowResponse existingResponse = responses.get(responseId);
+        if (existingResponse == null) {
+            return;
+        }
+        List<WorkflowExecutionResult> results = existingResponse.getResults();
+        for (int i = 0; i < results.size(); i++) {
+            if (workflowId.equals(results.get(i).getWorkflowId())) {
+                responses.put(responseId, existingResponse.replace(i,
+                        results.get(i).withHistoryStats(historyStats), versions.incrementAndGet()));
+                return;
+            }
+        }
+    }
+
+    // Average history footprint and latency of the sampled runs of each scenario
+    public Map<String, Map<String, Object>> getHistoryAggregates() {
+        Map<String, double[]> sums = new TreeMap<>();
+        for (WorkflowResponse response : responses.values()) {
+            for (WorkflowExecutionResult result : response.getResults()) {
+                HistoryStats stats = result.getHistoryStats();
+                if (stats == null) {
+                    continue;
+                }
+                double[] sum = sums.computeIfAbsent(response.getScenario(), k -> new double[8]);
+                sum[0]++;
+                sum[1] += stats.getEventCount();
+                sum[2] += stats.getHistoryBytes();
+                sum[3] += stats.getWorkflowTaskCount();
+                sum[4] += stats.getActivityTaskCount();
+                sum[5] += stats.getLocalActivityCount();
+                sum[6] += result.getUpdateResponseLatencyMs();
+                sum[7] += result.getWorkflowResponseLatencyMs();
+            }
+        }
+
+        Map<String, Map<String, Object>> aggregates = new TreeMap<>();
+        sums.forEach((scenario, sum) -> {
+            double n = sum[0];
+            Map<String, Object> aggregate = new LinkedHashMap<>();
+            aggregate.put("sampledRuns", (long) n);
+            aggregate.put("avgEventCount", sum[1] / n);
+            aggregate.put("avgHistoryBytes", sum[2] / n);
+            aggregate.put("avgWorkflowTaskCount", sum[3] / n);
+            aggregate.put("avgActivityTaskCount", sum[4] / n);
+            aggregate.put("avgLocalActivityCount", sum[5] / n);
+            aggregate.put("avgUpdateResponseLatencyMs", sum[6] / n);
+            aggregate.put("avgWorkflowResponseLatencyMs", sum[7] / n);
+            aggregates.put(scenario, aggregate);
+        });
+        return aggregates;
     }
 
     // Clear all results for a specific workflow ID
-    public void clearWorkflowResults(String workflowId) {
+    public synchronized void clearWorkflowResults(String workflowId) {
         responses.remove(workflowId);
+        responseCache.invalidate(workflowId);
+        Long lastRun = lastRunOf.remove(workflowId);
+        if (lastRun != null) {
+            recentRuns.remove(lastRun);
+        }
     }
 
     // Clear all results
-    public void clearAllResults() {
+    public synchronized void clearAllResults() {
         responses.clear();
+        responseCache.clear();
+        recentRuns.clear();
+        lastRunOf.clear();
     }
 }
\ No newline at end of file
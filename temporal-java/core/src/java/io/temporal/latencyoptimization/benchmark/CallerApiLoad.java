@@ -0,0 +1,280 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a running caller API over HTTP, one workflow per {@code /runWorkflow} call, for the
+ * benchmarks that compare scenarios and settings against a real Temporal service. A run's latency is
+ * the one the caller API measured: its update accept latency for the scenarios that wait for
+ * ACCEPTED, its update latency, or the workflow latency for scenarios without an update, so HTTP
+ * overhead between the driver and the caller API isn't included.
+ */
+final class CallerApiLoad {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Transfers spread over this many accounts, so sharding and the ledger see a realistic mix
+    private static final int ACCOUNTS = 1000;
+
+    private final String baseUrl;
+    private final HttpClient http;
+
+    CallerApiLoad(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /** One workflow of the scenario. A run that failed or wasn't admitted has a latency of NaN. */
+    static final class Run {
+        final String scenario;
+        final double latencyMs;
+
+        Run(String scenario, double latencyMs) {
+            this.scenario = scenario;
+            this.latencyMs = latencyMs;
+        }
+
+        boolean completed() {
+            return !Double.isNaN(latencyMs);
+        }
+    }
+
+    /** Runs of one load level. */
+    static final class LoadResult {
+        private final double[] sortedLatenciesMs;
+        private final int runs;
+        private final double elapsedSeconds;
+
+        LoadResult(List<Run> runs, double elapsedSeconds) {
+            this.sortedLatenciesMs =
+                    runs.stream().filter(Run::completed).mapToDouble(r -> r.latencyMs).sorted().toArray();
+            this.runs = runs.size();
+            this.elapsedSeconds = elapsedSeconds;
+        }
+
+        int getRuns() {
+            return runs;
+        }
+
+        int getErrors() {
+            return runs - sortedLatenciesMs.length;
+        }
+
+        double getErrorRate() {
+            return runs == 0 ? 0 : (double) getErrors() / runs;
+        }
+
+        /** Completed runs per second. */
+        double getThroughput() {
+            return sortedLatenciesMs.length / elapsedSeconds;
+        }
+
+        double percentile(double quantile) {
+            if (sortedLatenciesMs.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(quantile * sortedLatenciesMs.length) - 1;
+            return sortedLatenciesMs[Math.max(0, Math.min(sortedLatenciesMs.length - 1, index))];
+        }
+
+        double mean() {
+            return Arrays.stream(sortedLatenciesMs).average().orElse(Double.NaN);
+        }
+    }
+
+    /** {@code concurrency} callers each start the next workflow as soon as the previous one returns. */
+    LoadResult closedLoop(String scenario, int concurrency, int runs) throws InterruptedException {
+        ConcurrentLinkedQueue<Run> results = new ConcurrentLinkedQueue<>();
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+        long begin = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            callers.execute(() -> results.add(runOnce(scenario)));
+        }
+        callers.shutdown();
+        callers.awaitTermination(1, TimeUnit.DAYS);
+        return new LoadResult(new ArrayList<>(results), (System.nanoTime() - begin) / 1e9);
+    }
+
+    /** Runs the scenarios in the given order, with up to {@code concurrency} in flight at once. */
+    List<Run> runSchedule(List<String> schedule, int concurrency) throws InterruptedException {
+        ConcurrentLinkedQueue<Run> results = new ConcurrentLinkedQueue<>();
+        ExecutorService callers = Executors.newFixedThreadPool(concurrency);
+        for (String scenario : schedule) {
+            callers.execute(() -> results.add(runOnce(scenario)));
+        }
+        callers.shutdown();
+        callers.awaitTermination(1, TimeUnit.DAYS);
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Starts workflows at a fixed rate whether or not earlier ones have returned, the way
+     * independent clients arrive. Unlike a closed loop this exposes queueing once the rate is more
+     * than the system sustains.
+     */
+    LoadResult openLoop(String scenario, double ratePerSecond, double durationSeconds) {
+        long intervalNanos = (long) (1e9 / ratePerSecond);
+        int count = (int) Math.max(1, Math.round(ratePerSecond * durationSeconds));
+        List<CompletableFuture<Run>> pending = new ArrayList<>(count);
+        long begin = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long due = begin + i * intervalNanos;
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            pending.add(send(scenario));
+        }
+        List<Run> runs = new ArrayList<>(count);
+        for (CompletableFuture<Run> run : pending) {
+            runs.add(run.join());
+        }
+        // The last start is due one interval before the end of the duration
+        return new LoadResult(runs, Math.max(durationSeconds, (System.nanoTime() - begin) / 1e9));
+    }
+
+    Run runOnce(String scenario) {
+        return send(scenario).join();
+    }
+
+    private CompletableFuture<Run> send(String scenario) {
+        return http.sendAsync(runWorkflowRequest(scenario), HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> new Run(scenario, latencyOf(response)))
+                .exceptionally(e -> new Run(scenario, Double.NaN));
+    }
+
+    private HttpRequest runWorkflowRequest(String scenario) {
+        int source = ThreadLocalRandom.current().nextInt(ACCOUNTS);
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("id", "bench-" + UUID.randomUUID().toString().substring(0, 13));
+        body.put("wf_type", scenario);
+        body.put("iterations", 1);
+        ObjectNode params = body.putObject("params");
+        params.put("amount", 100);
+        params.put("sourceAccount", "account-" + source);
+        params.put("targetAccount", "account-" + (source + 1) % ACCOUNTS);
+        return HttpRequest.newBuilder(URI.create(baseUrl + "/runWorkflow"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+    }
+
+    private static double latencyOf(HttpResponse<String> response) {
+        if (response.statusCode() != 200) {
+            return Double.NaN;
+        }
+        try {
+            JsonNode result = MAPPER.readTree(response.body()).path("results").path(0);
+            if (!"COMPLETED".equals(result.path("executionStatus").asText())) {
+                return Double.NaN;
+            }
+            double accepted = result.path("updateAcceptedLatencyMs").asDouble();
+            double update = result.path("updateResponseLatencyMs").asDouble();
+            if (accepted > 0) {
+                return accepted;
+            }
+            return update > 0 ? update : result.path("workflowResponseLatencyMs").asDouble();
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+
+    /** Replaces the simulated activity latency profiles, see {@code PUT /config/latency}. */
+    void configureLatency(String spec) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/config/latency"))
+                        .PUT(HttpRequest.BodyPublishers.ofString(spec))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalArgumentException("Latency profile rejected: " + response.body());
+        }
+    }
+
+    void resetLatency() throws IOException, InterruptedException {
+        http.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/config/latency")).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Parses {@code key=value} arguments, separated by spaces or semicolons so several fit in one
+     * {@code -Parg=}.
+     */
+    static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            for (String option : arg.split("[;\\s]+")) {
+                int eq = option.indexOf('=');
+                if (eq > 0) {
+                    options.put(option.substring(0, eq).trim(), option.substring(eq + 1).trim());
+                }
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Caller APIs from {@code name@url,name@url}, one per worker profile since worker settings are
+     * fixed when a caller API starts. A URL without a name is named by its position.
+     */
+    static Map<String, String> parseProfiles(String value) {
+        Map<String, String> profiles = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int at = entry.indexOf('@');
+            if (at > 0) {
+                profiles.put(entry.substring(0, at), entry.substring(at + 1));
+            } else {
+                profiles.put(profiles.isEmpty() ? "default" : "profile" + profiles.size(), entry);
+            }
+        }
+        return profiles;
+    }
+}
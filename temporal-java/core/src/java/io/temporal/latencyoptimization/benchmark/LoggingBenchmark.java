@@ -0,0 +1,216 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-transaction logging cost of the worker and client hot path: the old {@code System.out}
+ * lines with string concatenation against the SLF4J lines written through a synchronous appender
+ * and through the {@code AsyncAppender} settings of {@code logback.xml}. Every variant writes to
+ * a file, so the numbers exclude terminal rendering. Each thread paces its transactions the way a
+ * worker thread spends most of its time waiting on activities; the written column shows whether
+ * the async appender had to drop lines to keep up.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.LoggingBenchmark
+ * </pre>
+ */
+public class LoggingBenchmark {
+    private static final int TRANSACTIONS_PER_THREAD = 10_000;
+    private static final long PACING_NANOS = 200_000;
+    private static final String PATTERN =
+            "%d{HH:mm:ss.SSS} {%X{WorkflowId} %X{ActivityId}} [%thread] %-5level %logger{36} - %msg %n";
+
+    public static void main(String[] args) throws Exception {
+        Set<Integer> threadCounts = new TreeSet<>(List.of(1, 4, Runtime.getRuntime().availableProcessors()));
+
+        System.out.printf("%-12s %8s %12s %12s %12s %10s%n",
+                "logging", "threads", "mean us/tx", "p99 us/tx", "p99.9 us/tx", "written");
+        for (String variant : List.of("system-out", "slf4j-sync", "slf4j-async")) {
+            run(variant, 1); // warm up
+            for (int threads : threadCounts) {
+                run(variant, threads);
+            }
+        }
+    }
+
+    private static void run(String variant, int threads) throws Exception {
+        Path file = Files.createTempFile("logging-benchmark", ".log");
+        try {
+            Sink sink = variant.equals("system-out") ? new PrintStreamSink(file) : new Slf4jSink(file, variant);
+
+            long[] latencies = new long[threads * TRANSACTIONS_PER_THREAD];
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                int offset = t * TRANSACTIONS_PER_THREAD;
+                new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < TRANSACTIONS_PER_THREAD; i++) {
+                        String txId = "TXID" + (1_000_000_000_000_000_000L + offset + i);
+                        long begin = System.nanoTime();
+                        sink.logTransaction(txId);
+                        latencies[offset + i] = System.nanoTime() - begin;
+                        LockSupport.parkNanos(PACING_NANOS);
+                    }
+                    done.countDown();
+                }).start();
+            }
+            start.countDown();
+            done.await();
+            long expectedLines = sink.close() * latencies.length;
+
+            long written;
+            try (Stream<String> lines = Files.lines(file)) {
+                written = lines.count();
+            }
+            Arrays.sort(latencies);
+            double mean = Arrays.stream(latencies).average().orElse(0) / 1000.0;
+            double p99 = latencies[(int) (latencies.length * 0.99)] / 1000.0;
+            double p999 = latencies[(int) (latencies.length * 0.999)] / 1000.0;
+            System.out.printf("%-12s %8d %12.2f %12.2f %12.2f %9.1f%%%n",
+                    variant, threads, mean, p99, p999, 100.0 * written / expectedLines);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Sink {
+        void logTransaction(String txId);
+
+        // Flushes and closes the output, returns the lines written per transaction
+        long close() throws IOException;
+    }
+
+    // The lines the activities and WorkflowRunClient printed for each transaction before SLF4J
+    private static final class PrintStreamSink implements Sink {
+        private final PrintStream out;
+
+        private PrintStreamSink(Path file) throws IOException {
+            this.out = new PrintStream(new FileOutputStream(file.toFile()), true);
+        }
+
+        @Override
+        public void logTransaction(String txId) {
+            out.println("Minting transaction ID");
+            out.println("Transaction ID minted: " + txId);
+            out.println("Initializing transaction");
+            out.println("Workflow initialized with result: " + "Initialized" + " (transactionId: " + txId + ")");
+            out.println("Sending $" + 100 + " from " + "Bob" + " to " + "Alice");
+            out.println("Transaction completed successfully");
+            out.println("Workflow completed with result: " + "Completed" + " (transactionId: " + txId + ")");
+            out.println("Workflow completed with result: " + "Completed" + " (transactionId: " + txId + ")");
+        }
+
+        @Override
+        public long close() {
+            out.close();
+            return 8;
+        }
+    }
+
+    // The same transaction as logged now, the debug lines are filtered out at INFO
+    private static final class Slf4jSink implements Sink {
+        private final ch.qos.logback.classic.Logger logger;
+        private final Appender<ILoggingEvent> appender;
+
+        private Slf4jSink(Path file, String name) throws IOException {
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+            PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+            encoder.setContext(context);
+            encoder.setPattern(PATTERN);
+            encoder.start();
+
+            OutputStreamAppender<ILoggingEvent> fileAppender = new OutputStreamAppender<>();
+            fileAppender.setContext(context);
+            fileAppender.setEncoder(encoder);
+            fileAppender.setOutputStream(new FileOutputStream(file.toFile()));
+            fileAppender.start();
+
+            if (name.equals("slf4j-async")) {
+                // Same settings as the ASYNC appender in logback.xml
+                AsyncAppender async = new AsyncAppender();
+                async.setContext(context);
+                async.setQueueSize(8192);
+                async.setDiscardingThreshold(1638);
+                async.setNeverBlock(true);
+                async.addAppender(fileAppender);
+                async.start();
+                this.appender = async;
+            } else {
+                this.appender = fileAppender;
+            }
+
+            this.logger = context.getLogger("benchmark." + name + "." + file.getFileName());
+            logger.setAdditive(false);
+            logger.setLevel(Level.INFO);
+            logger.addAppender(appender);
+        }
+
+        @Override
+        public void logTransaction(String txId) {
+            Logger log = logger;
+            log.debug("Minting transaction ID");
+            log.info("Transaction ID minted: {}", txId);
+            log.debug("Initializing transaction {}", txId);
+            log.info("Workflow {} initialized with result: {} (transactionId: {})",
+                    "latency-1-iteration-1", "Initialized", txId);
+            log.info("Transaction {} completed: sent ${} from {} to {}", txId, 100, "Bob", "Alice");
+            log.info("Workflow {} completed with result: {} (transactionId: {})",
+                    "latency-1-iteration-1", "Completed", txId);
+        }
+
+        @Override
+        public long close() {
+            logger.detachAppender(appender);
+            // Stopping the async appender drains its queue into the file first
+            appender.stop();
+            return 4;
+        }
+    }
+}
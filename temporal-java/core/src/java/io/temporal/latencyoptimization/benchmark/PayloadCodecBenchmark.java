@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import com.google.protobuf.ByteString;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.latencyoptimization.codec.CompressionPayloadCodec;
+import io.temporal.latencyoptimization.codec.PayloadCodecStats;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Encode/decode time and compression ratio of each payload codec across payload sizes, using
+ * JSON transactions with memo and metadata text as the payload. Use it to pick a codec and a
+ * {@code TEMPORAL_PAYLOAD_CODEC_THRESHOLD_BYTES} for the payload sizes you actually send.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.PayloadCodecBenchmark
+ * </pre>
+ */
+public class PayloadCodecBenchmark {
+    private static final int[] PAYLOAD_SIZES = {128, 512, 2048, 8192, 32768, 131072};
+    private static final long BYTES_PER_MEASUREMENT = 256L * 1024 * 1024;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        System.out.printf("%-6s %9s %10s %8s %12s %12s%n",
+                "codec", "rawBytes", "encBytes", "ratio", "encode us", "decode us");
+
+        for (int size : PAYLOAD_SIZES) {
+            Payload payload = transactionPayload(size);
+            for (CompressionPayloadCodec.Algorithm algorithm : CompressionPayloadCodec.Algorithm.values()) {
+                report(algorithm, payload);
+            }
+        }
+    }
+
+    private static void report(CompressionPayloadCodec.Algorithm algorithm, Payload payload) {
+        // Threshold 0 so every size is compressed, the table is what the threshold is chosen from
+        CompressionPayloadCodec codec = new CompressionPayloadCodec(
+                algorithm, 0, new PayloadCodecStats(algorithm.name()), workflowId -> "benchmark");
+        List<Payload> raw = List.of(payload);
+        List<Payload> encoded = codec.encode(raw);
+        int iterations = (int) Math.max(1_000, BYTES_PER_MEASUREMENT / payload.getSerializedSize());
+
+        // Warm up both directions before measuring
+        for (int i = 0; i < iterations / 4; i++) {
+            sink += codec.decode(codec.encode(raw)).size();
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.encode(raw).get(0).getSerializedSize();
+        }
+        double encodeMicros = (System.nanoTime() - start) / 1000.0 / iterations;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += codec.decode(encoded).get(0).getSerializedSize();
+        }
+        double decodeMicros = (System.nanoTime() - start) / 1000.0 / iterations;
+
+        int rawBytes = payload.getSerializedSize();
+        int encodedBytes = encoded.get(0).getSerializedSize();
+        System.out.printf("%-6s %9d %10d %8.2f %12.2f %12.2f%n",
+                algorithm.name().toLowerCase(), rawBytes, encodedBytes,
+                (double) rawBytes / encodedBytes, encodeMicros, decodeMicros);
+    }
+
+    // A JSON list of transfers with memo text, sized to roughly targetBytes
+    private static Payload transactionPayload(int targetBytes) {
+        Random random = new Random(42);
+        String[] accounts = {"justine_morris", "ian_wu", "raul_ruidiaz", "emma_stockton"};
+        String[] memoWords = {"invoice", "rent", "march", "dinner", "refund", "order", "shared", "trip", "deposit"};
+
+        StringBuilder json = new StringBuilder("[");
+        while (json.length() < targetBytes) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"TXID").append(String.format("%010d", random.nextInt(1_000_000_000)))
+                    .append("\",\"sourceAccount\":\"").append(accounts[random.nextInt(accounts.length)])
+                    .append("\",\"targetAccount\":\"").append(accounts[random.nextInt(accounts.length)])
+                    .append("\",\"amount\":").append(random.nextInt(100_000))
+                    .append(",\"memo\":\"");
+            for (int w = 0; w < 6; w++) {
+                json.append(memoWords[random.nextInt(memoWords.length)]).append(' ');
+            }
+            json.append("\",\"metadata\":{\"channel\":\"mobile\",\"region\":\"us-east-1\"}}");
+        }
+        json.append(']');
+
+        return Payload.newBuilder()
+                .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, ByteString.copyFromUtf8("json/plain"))
+                .setData(ByteString.copyFromUtf8(json.toString()))
+                .build();
+    }
+}
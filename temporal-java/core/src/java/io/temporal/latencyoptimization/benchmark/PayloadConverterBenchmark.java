@@ -0,0 +1,91 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.DataConverter;
+import io.temporal.common.converter.DefaultDataConverter;
+import io.temporal.latencyoptimization.api.TemporalClient;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import io.temporal.latencyoptimization.transaction.TxResult;
+
+/**
+ * Compares the default JSON data converter with the binary transaction converter on the payloads
+ * one UpdateWithStart transfer produces: the request, the transaction passed between the
+ * activities, and the update and workflow results.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.PayloadConverterBenchmark
+ * </pre>
+ */
+public class PayloadConverterBenchmark {
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+
+    private static final TransactionRequest REQUEST =
+            new TransactionRequest("justine_morris", "ian_wu", 1000, 200, "latency-1-iteration-1");
+    private static final Transaction TRANSACTION =
+            new Transaction("TXID0123456789", "justine_morris", "ian_wu", 1000);
+    private static final TxResult UPDATE_RESULT =
+            new TxResult("TXID0123456789", "Initialization successful");
+    private static final TxResult WORKFLOW_RESULT =
+            new TxResult("TXID0123456789", "Transaction completed successfully.");
+
+    // Payloads per transfer: workflow input, mint in/out, init in/out, complete in, two results
+    private static final Object[] TRANSFER_PAYLOADS = {
+            REQUEST, REQUEST, TRANSACTION, TRANSACTION, TRANSACTION, TRANSACTION, UPDATE_RESULT, WORKFLOW_RESULT
+    };
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        report("json", DefaultDataConverter.STANDARD_INSTANCE);
+        report("binary", TemporalClient.newBinaryDataConverter());
+    }
+
+    private static void report(String name, DataConverter converter) {
+        run(converter, WARMUP_ITERATIONS);
+
+        long start = System.nanoTime();
+        run(converter, MEASURED_ITERATIONS);
+        double nanosPerTransfer = (System.nanoTime() - start) / (double) MEASURED_ITERATIONS;
+
+        long bytesPerTransfer = 0;
+        for (Object value : TRANSFER_PAYLOADS) {
+            bytesPerTransfer += converter.toPayload(value).get().getSerializedSize();
+        }
+
+        System.out.printf(
+                "%-7s %8.0f ns/transfer (encode + decode)  %5d payload bytes/transfer%n",
+                name, nanosPerTransfer, bytesPerTransfer);
+    }
+
+    private static void run(DataConverter converter, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            for (Object value : TRANSFER_PAYLOADS) {
+                Payload payload = converter.toPayload(value).get();
+                Object decoded = converter.fromPayload(payload, value.getClass(), value.getClass());
+                sink += decoded.hashCode();
+            }
+        }
+    }
+}
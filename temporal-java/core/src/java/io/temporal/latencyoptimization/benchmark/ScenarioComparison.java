@@ -0,0 +1,214 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares scenarios run interleaved in one session rather than as separate batches, so drift over
+ * time (GC, cache warming, noisy neighbors) hits every scenario alike instead of biasing the
+ * comparison. The schedule is built from blocks that hold each scenario once in random order.
+ *
+ * <p>Every scenario is compared with the first one, the baseline: the difference in median and
+ * mean latency with percentile bootstrap 95% confidence intervals, and a two-sided Mann-Whitney
+ * rank-sum test. A difference only counts as real when the test is significant at {@code alpha}
+ * and the median's interval excludes zero.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.ScenarioComparison \
+ *     -Parg="scenarios=RegularActivities,UpdateWithStartLocalActivities;runs=300;url=http://localhost:7070"
+ * </pre>
+ */
+public class ScenarioComparison {
+    private static final int BOOTSTRAP_RESAMPLES = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CallerApiLoad.parseArgs(args);
+        List<String> scenarios = Arrays.asList(options.getOrDefault("scenarios",
+                "RegularActivities,UpdateWithStartLocalActivities").split(","));
+        int runs = Integer.parseInt(options.getOrDefault("runs", "200"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "10"));
+        double alpha = Double.parseDouble(options.getOrDefault("alpha", "0.05"));
+        Random random = new Random(Long.parseLong(options.getOrDefault("seed", "42")));
+        CallerApiLoad load = new CallerApiLoad(options.getOrDefault("url", "http://localhost:7070"));
+
+        load.runSchedule(interleave(scenarios, warmup, random), concurrency);
+        List<CallerApiLoad.Run> results = load.runSchedule(interleave(scenarios, runs, random), concurrency);
+
+        Map<String, List<Double>> latencies = new LinkedHashMap<>();
+        Map<String, Integer> errors = new LinkedHashMap<>();
+        for (String scenario : scenarios) {
+            latencies.put(scenario, new ArrayList<>());
+            errors.put(scenario, 0);
+        }
+        for (CallerApiLoad.Run run : results) {
+            if (run.completed()) {
+                latencies.get(run.scenario).add(run.latencyMs);
+            } else {
+                errors.merge(run.scenario, 1, Integer::sum);
+            }
+        }
+
+        System.out.printf("%-40s %6s %6s %9s %9s %9s %9s%n", "scenario", "runs", "errors", "mean ms", "p50 ms",
+                "p90 ms", "p99 ms");
+        Map<String, double[]> samples = new LinkedHashMap<>();
+        for (String scenario : scenarios) {
+            double[] sorted = latencies.get(scenario).stream().mapToDouble(Double::doubleValue).sorted().toArray();
+            samples.put(scenario, sorted);
+            System.out.printf("%-40s %6d %6d %9.1f %9.1f %9.1f %9.1f%n", scenario, sorted.length,
+                    errors.get(scenario), mean(sorted), quantile(sorted, 0.5), quantile(sorted, 0.9),
+                    quantile(sorted, 0.99));
+        }
+
+        String baseline = scenarios.get(0);
+        double[] base = samples.get(baseline);
+        System.out.printf("%nDifference to %s (negative is faster), bootstrap 95%% CI:%n", baseline);
+        System.out.printf("%-40s %28s %28s %10s  %s%n", "scenario", "median diff ms", "mean diff ms",
+                "p-value", "verdict");
+        for (String scenario : scenarios.subList(1, scenarios.size())) {
+            double[] other = samples.get(scenario);
+            if (base.length < 2 || other.length < 2) {
+                System.out.printf("%-40s not enough completed runs%n", scenario);
+                continue;
+            }
+            double[] medianCi = bootstrap(base, other, random, true);
+            double[] meanCi = bootstrap(base, other, random, false);
+            double medianDiff = quantile(other, 0.5) - quantile(base, 0.5);
+            double pValue = rankSumPValue(base, other);
+
+            String verdict;
+            if (pValue >= alpha || (medianCi[0] <= 0 && medianCi[1] >= 0)) {
+                verdict = "no significant difference";
+            } else {
+                verdict = String.format("%.2fx %s", quantile(base, 0.5) / quantile(other, 0.5),
+                        medianDiff < 0 ? "faster" : "slower");
+            }
+            System.out.printf("%-40s %8.1f [%7.1f, %7.1f] %8.1f [%7.1f, %7.1f] %10.2g  %s%n", scenario,
+                    medianDiff, medianCi[0], medianCi[1], mean(other) - mean(base), meanCi[0], meanCi[1],
+                    pValue, verdict);
+        }
+    }
+
+    // Blocks holding every scenario once, each shuffled
+    private static List<String> interleave(List<String> scenarios, int runs, Random random) {
+        List<String> schedule = new ArrayList<>(scenarios.size() * runs);
+        List<String> block = new ArrayList<>(scenarios);
+        for (int i = 0; i < runs; i++) {
+            Collections.shuffle(block, random);
+            schedule.addAll(block);
+        }
+        return schedule;
+    }
+
+    // 2.5th and 97.5th percentile of the median (or mean) difference over resamples of both groups
+    private static double[] bootstrap(double[] base, double[] other, Random random, boolean median) {
+        double[] diffs = new double[BOOTSTRAP_RESAMPLES];
+        double[] baseResample = new double[base.length];
+        double[] otherResample = new double[other.length];
+        for (int b = 0; b < BOOTSTRAP_RESAMPLES; b++) {
+            for (int i = 0; i < base.length; i++) {
+                baseResample[i] = base[random.nextInt(base.length)];
+            }
+            for (int i = 0; i < other.length; i++) {
+                otherResample[i] = other[random.nextInt(other.length)];
+            }
+            if (median) {
+                Arrays.sort(baseResample);
+                Arrays.sort(otherResample);
+                diffs[b] = quantile(otherResample, 0.5) - quantile(baseResample, 0.5);
+            } else {
+                diffs[b] = mean(otherResample) - mean(baseResample);
+            }
+        }
+        Arrays.sort(diffs);
+        return new double[] {quantile(diffs, 0.025), quantile(diffs, 0.975)};
+    }
+
+    // Two-sided Mann-Whitney U test, normal approximation with tie correction
+    private static double rankSumPValue(double[] a, double[] b) {
+        int n1 = a.length;
+        int n2 = b.length;
+        int n = n1 + n2;
+        double[][] pooled = new double[n][];
+        for (int i = 0; i < n1; i++) {
+            pooled[i] = new double[] {a[i], 0};
+        }
+        for (int i = 0; i < n2; i++) {
+            pooled[n1 + i] = new double[] {b[i], 1};
+        }
+        Arrays.sort(pooled, (x, y) -> Double.compare(x[0], y[0]));
+
+        double rankSumA = 0;
+        double tieTerm = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j + 1 < n && pooled[j + 1][0] == pooled[i][0]) {
+                j++;
+            }
+            double rank = (i + j + 2) / 2.0;
+            int ties = j - i + 1;
+            tieTerm += (double) ties * ties * ties - ties;
+            for (int k = i; k <= j; k++) {
+                if (pooled[k][1] == 0) {
+                    rankSumA += rank;
+                }
+            }
+            i = j + 1;
+        }
+
+        double u = rankSumA - n1 * (n1 + 1) / 2.0;
+        double meanU = n1 * (double) n2 / 2;
+        double varianceU = n1 * (double) n2 / 12 * ((n + 1) - tieTerm / ((double) n * (n - 1)));
+        if (varianceU <= 0) {
+            return 1;
+        }
+        double z = (Math.abs(u - meanU) - 0.5) / Math.sqrt(varianceU);
+        return Math.min(1, erfc(Math.max(0, z) / Math.sqrt(2)));
+    }
+
+    // Complementary error function, Numerical Recipes' Chebyshev fit, relative error below 1.2e-7
+    private static double erfc(double x) {
+        double t = 1 / (1 + 0.5 * Math.abs(x));
+        double tau = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196
+                + t * (0.09678418 + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398
+                + t * (1.48851587 + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? tau : 2 - tau;
+    }
+
+    private static double mean(double[] values) {
+        return Arrays.stream(values).average().orElse(Double.NaN);
+    }
+
+    private static double quantile(double[] sorted, double q) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(q * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the highest start rate each scenario sustains while its p99 latency stays under an SLO.
+ * Each probe drives the caller API in an open loop at a fixed rate for {@code seconds}. A rate is
+ * sustained if the p99 is within {@code sloMs}, errors (including 429s from admission control) stay
+ * under {@code maxErrorRate}, and completions keep up with at least 90% of the offered rate. The
+ * rate doubles from {@code minRate} until a probe fails, then a binary search narrows the bracket.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.ThroughputTuner \
+ *     -Parg="scenarios=RegularActivities,UpdateWithStartLocalActivities;sloMs=200;seconds=20;profiles=http://localhost:7070"
+ * </pre>
+ *
+ * Ends with the scenarios and worker profiles ranked by sustainable throughput.
+ */
+public class ThroughputTuner {
+    private static final double MIN_KEEP_UP = 0.9;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = CallerApiLoad.parseArgs(args);
+        List<String> scenarios = Arrays.asList(options.getOrDefault("scenarios",
+                "RegularActivities,LocalActivities,UpdateWithStartLocalActivities").split(","));
+        Map<String, String> profiles =
+                CallerApiLoad.parseProfiles(options.getOrDefault("profiles", "http://localhost:7070"));
+        double sloMs = Double.parseDouble(options.getOrDefault("sloMs", "200"));
+        double maxErrorRate = Double.parseDouble(options.getOrDefault("maxErrorRate", "0.01"));
+        double seconds = Double.parseDouble(options.getOrDefault("seconds", "20"));
+        double minRate = Double.parseDouble(options.getOrDefault("minRate", "1"));
+        double maxRate = Double.parseDouble(options.getOrDefault("maxRate", "1000"));
+        int steps = Integer.parseInt(options.getOrDefault("steps", "6"));
+        String delay = options.get("delayMs");
+
+        List<Tuned> ranking = new ArrayList<>();
+        System.out.printf("%-12s %-40s %9s %9s %9s %7s %s%n",
+                "profile", "scenario", "rate/s", "runs/s", "p99 ms", "errors", "");
+        for (Map.Entry<String, String> profile : profiles.entrySet()) {
+            CallerApiLoad load = new CallerApiLoad(profile.getValue());
+            if (delay != null) {
+                load.configureLatency("*=fixed:ms=" + delay);
+            }
+            try {
+                for (String scenario : scenarios) {
+                    Probe probe = new Probe(load, profile.getKey(), scenario, seconds, sloMs, maxErrorRate);
+                    ranking.add(tune(probe, minRate, maxRate, steps));
+                }
+            } finally {
+                if (delay != null) {
+                    load.resetLatency();
+                }
+            }
+        }
+
+        ranking.sort(Comparator.comparingDouble((Tuned t) -> t.rate).reversed());
+        System.out.printf("%nHighest sustainable rate with p99 <= %.0f ms:%n", sloMs);
+        System.out.printf("%4s %-12s %-40s %9s %9s %9s%n", "rank", "profile", "scenario", "rate/s", "runs/s", "p99 ms");
+        for (int i = 0; i < ranking.size(); i++) {
+            Tuned tuned = ranking.get(i);
+            System.out.printf("%4d %-12s %-40s %9.1f %9.1f %9.1f%n", i + 1, tuned.profile, tuned.scenario,
+                    tuned.rate, tuned.throughput, tuned.p99);
+        }
+    }
+
+    private static Tuned tune(Probe probe, double minRate, double maxRate, int steps) {
+        Tuned best = new Tuned(probe.profile, probe.scenario, 0, 0, Double.NaN);
+        double low = 0;
+        double high = maxRate;
+        for (double rate = minRate; rate <= maxRate; rate *= 2) {
+            CallerApiLoad.LoadResult result = probe.run(rate);
+            if (!probe.sustained(rate, result)) {
+                high = rate;
+                break;
+            }
+            low = rate;
+            best = new Tuned(probe.profile, probe.scenario, rate, result.getThroughput(), result.percentile(0.99));
+        }
+        if (low == 0) {
+            return best;
+        }
+        for (int step = 0; step < steps && high - low > low * 0.05; step++) {
+            double rate = (low + high) / 2;
+            CallerApiLoad.LoadResult result = probe.run(rate);
+            if (probe.sustained(rate, result)) {
+                low = rate;
+                best = new Tuned(probe.profile, probe.scenario, rate, result.getThroughput(), result.percentile(0.99));
+            } else {
+                high = rate;
+            }
+        }
+        return best;
+    }
+
+    private static final class Probe {
+        final CallerApiLoad load;
+        final String profile;
+        final String scenario;
+        final double seconds;
+        final double sloMs;
+        final double maxErrorRate;
+
+        Probe(CallerApiLoad load, String profile, String scenario, double seconds, double sloMs,
+              double maxErrorRate) {
+            this.load = load;
+            this.profile = profile;
+            this.scenario = scenario;
+            this.seconds = seconds;
+            this.sloMs = sloMs;
+            this.maxErrorRate = maxErrorRate;
+        }
+
+        CallerApiLoad.LoadResult run(double rate) {
+            CallerApiLoad.LoadResult result = load.openLoop(scenario, rate, seconds);
+            System.out.printf("%-12s %-40s %9.1f %9.1f %9.1f %7d %s%n", profile, scenario, rate,
+                    result.getThroughput(), result.percentile(0.99), result.getErrors(),
+                    sustained(rate, result) ? "ok" : "over");
+            return result;
+        }
+
+        boolean sustained(double rate, CallerApiLoad.LoadResult result) {
+            return result.getErrorRate() <= maxErrorRate
+                    && result.percentile(0.99) <= sloMs
+                    && result.getThroughput() >= rate * MIN_KEEP_UP;
+        }
+    }
+
+    private static final class Tuned {
+        final String profile;
+        final String scenario;
+        final double rate;
+        final double throughput;
+        final double p99;
+
+        Tuned(String profile, String scenario, double rate, double throughput, double p99) {
+            this.profile = profile;
+            this.scenario = scenario;
+            this.rate = rate;
+            this.throughput = throughput;
+            this.p99 = p99;
+        }
+    }
+}
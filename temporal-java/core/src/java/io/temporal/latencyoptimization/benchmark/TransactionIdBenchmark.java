@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.benchmark;
+
+import io.temporal.latencyoptimization.transaction.RandomTransactionIdGenerator;
+import io.temporal.latencyoptimization.transaction.SnowflakeTransactionIdGenerator;
+import io.temporal.latencyoptimization.transaction.TransactionIdGenerator;
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-call time, allocated bytes and collisions of the transaction ID generators, single threaded
+ * and with several threads minting at once to show contention.
+ *
+ * <pre>
+ * ./gradlew -q execute -PmainClass=io.temporal.latencyoptimization.benchmark.TransactionIdBenchmark
+ * </pre>
+ */
+public class TransactionIdBenchmark {
+    private static final int CALLS_PER_THREAD = 2_000_000;
+    private static final int COLLISION_SAMPLE = 1_000_000;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static final AtomicLong sink = new AtomicLong();
+
+    public static void main(String[] args) throws InterruptedException {
+        TransactionIdGenerator[] generators = {
+                new RandomTransactionIdGenerator(),
+                new SnowflakeTransactionIdGenerator(1)
+        };
+        Set<Integer> threadCounts = new TreeSet<>(List.of(1, 4, Runtime.getRuntime().availableProcessors()));
+
+        System.out.printf("%-10s %8s %12s %14s %12s%n",
+                "generator", "threads", "ns/call", "bytes/call", "collisions");
+        for (TransactionIdGenerator generator : generators) {
+            String name = generator instanceof RandomTransactionIdGenerator ? "random" : "snowflake";
+            run(generator, 1); // warm up
+            long collisions = collisions(generator);
+            for (int threads : threadCounts) {
+                double[] result = run(generator, threads);
+                System.out.printf("%-10s %8d %12.1f %14.1f %12d%n",
+                        name, threads, result[0], result[1], collisions);
+            }
+        }
+    }
+
+    // Returns wall-clock ns per call across all threads and allocated bytes per call
+    private static double[] run(TransactionIdGenerator generator, int threads) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicLong allocatedBytes = new AtomicLong();
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                long threadId = Thread.currentThread().getId();
+                long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+                long local = 0;
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    local += generator.nextId().length();
+                }
+                allocatedBytes.addAndGet(THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore);
+                sink.addAndGet(local);
+                done.countDown();
+            }).start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+
+        long calls = (long) threads * CALLS_PER_THREAD;
+        return new double[]{(double) elapsed / calls, (double) allocatedBytes.get() / calls};
+    }
+
+    private static long collisions(TransactionIdGenerator generator) {
+        Set<String> seen = new HashSet<>(COLLISION_SAMPLE * 2);
+        long collisions = 0;
+        for (int i = 0; i < COLLISION_SAMPLE; i++) {
+            if (!seen.add(generator.nextId())) {
+                collisions++;
+            }
+        }
+        return collisions;
+    }
+}
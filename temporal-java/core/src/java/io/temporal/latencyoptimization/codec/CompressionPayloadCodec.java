@@ -0,0 +1,182 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.codec;
+
+import com.github.luben.zstd.Zstd;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.payload.codec.PayloadCodec;
+import io.temporal.payload.codec.PayloadCodecException;
+import io.temporal.payload.context.HasWorkflowSerializationContext;
+import io.temporal.payload.context.SerializationContext;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * Compresses whole payloads (metadata included) that are at least {@code thresholdBytes} long.
+ * Smaller payloads, and payloads that don't shrink, pass through untouched. Every encode and decode
+ * is recorded in {@link PayloadCodecStats} under the scenario of the workflow it belongs to.
+ */
+public class CompressionPayloadCodec implements PayloadCodec {
+
+  public enum Algorithm {
+    LZ4("binary/lz4"),
+    ZSTD("binary/zstd");
+
+    private final ByteString encoding;
+
+    Algorithm(String encoding) {
+      this.encoding = ByteString.copyFromUtf8(encoding);
+    }
+
+    // Null for payloads that aren't compressed
+    static Algorithm ofEncoding(ByteString encoding) {
+      for (Algorithm algorithm : values()) {
+        if (algorithm.encoding.equals(encoding)) {
+          return algorithm;
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final int ZSTD_LEVEL = 3;
+  private static final LZ4Compressor LZ4_COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+  private static final LZ4FastDecompressor LZ4_DECOMPRESSOR =
+      LZ4Factory.fastestInstance().fastDecompressor();
+
+  private final Algorithm algorithm;
+  private final int thresholdBytes;
+  private final PayloadCodecStats stats;
+  private final Function<String, String> scenarioOfWorkflowId;
+  private final String scenario;
+
+  public CompressionPayloadCodec(
+      Algorithm algorithm,
+      int thresholdBytes,
+      PayloadCodecStats stats,
+      Function<String, String> scenarioOfWorkflowId) {
+    this(algorithm, thresholdBytes, stats, scenarioOfWorkflowId, PayloadCodecStats.UNKNOWN_SCENARIO);
+  }
+
+  private CompressionPayloadCodec(
+      Algorithm algorithm,
+      int thresholdBytes,
+      PayloadCodecStats stats,
+      Function<String, String> scenarioOfWorkflowId,
+      String scenario) {
+    this.algorithm = algorithm;
+    this.thresholdBytes = thresholdBytes;
+    this.stats = stats;
+    this.scenarioOfWorkflowId = scenarioOfWorkflowId;
+    this.scenario = scenario;
+  }
+
+  @Override
+  public PayloadCodec withContext(SerializationContext context) {
+    if (!(context instanceof HasWorkflowSerializationContext)) {
+      return this;
+    }
+    String workflowId = ((HasWorkflowSerializationContext) context).getWorkflowId();
+    return new CompressionPayloadCodec(
+        algorithm, thresholdBytes, stats, scenarioOfWorkflowId, scenarioOfWorkflowId.apply(workflowId));
+  }
+
+  @Override
+  public List<Payload> encode(List<Payload> payloads) {
+    List<Payload> encoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      long start = System.nanoTime();
+      int rawSize = payload.getSerializedSize();
+
+      Payload out = payload;
+      if (rawSize >= thresholdBytes) {
+        Payload compressed =
+            Payload.newBuilder()
+                .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, algorithm.encoding)
+                .setData(ByteString.copyFrom(compress(payload.toByteArray())))
+                .build();
+        if (compressed.getSerializedSize() < rawSize) {
+          out = compressed;
+        }
+      }
+
+      stats.recordEncode(scenario, rawSize, out.getSerializedSize(), System.nanoTime() - start);
+      encoded.add(out);
+    }
+    return encoded;
+  }
+
+  @Override
+  public List<Payload> decode(List<Payload> payloads) {
+    List<Payload> decoded = new ArrayList<>(payloads.size());
+    for (Payload payload : payloads) {
+      // Decode by the payload's own encoding, history written under another algorithm stays readable
+      Algorithm compressedWith =
+          Algorithm.ofEncoding(
+              payload.getMetadataOrDefault(EncodingKeys.METADATA_ENCODING_KEY, null));
+      if (compressedWith == null) {
+        decoded.add(payload);
+        continue;
+      }
+
+      long start = System.nanoTime();
+      try {
+        Payload raw =
+            Payload.parseFrom(decompress(compressedWith, payload.getData().toByteArray()));
+        stats.recordDecode(scenario, raw.getSerializedSize(), System.nanoTime() - start);
+        decoded.add(raw);
+      } catch (InvalidProtocolBufferException | RuntimeException e) {
+        // LZ4 and Zstd report corrupt or truncated blocks with their own unchecked exceptions
+        throw new PayloadCodecException(
+            "Failed to decode " + compressedWith.encoding.toStringUtf8() + " payload", e);
+      }
+    }
+    return decoded;
+  }
+
+  // Layout: 4 byte uncompressed length followed by the compressed block
+  private byte[] compress(byte[] raw) {
+    byte[] block =
+        algorithm == Algorithm.LZ4 ? LZ4_COMPRESSOR.compress(raw) : Zstd.compress(raw, ZSTD_LEVEL);
+    return ByteBuffer.allocate(4 + block.length).putInt(raw.length).put(block).array();
+  }
+
+  private static byte[] decompress(Algorithm compressedWith, byte[] data) {
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    int rawLength = buffer.getInt();
+    if (rawLength < 0) {
+      throw new IllegalArgumentException("Negative uncompressed length " + rawLength);
+    }
+    byte[] block = new byte[buffer.remaining()];
+    buffer.get(block);
+    return compressedWith == Algorithm.LZ4
+        ? LZ4_DECOMPRESSOR.decompress(block, rawLength)
+        : Zstd.decompress(block, rawLength);
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.codec;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Raw vs encoded bytes and encode/decode time of the payload codec, per scenario and payload size
+ * class, so a codec and threshold can be chosen per payload size from measurements.
+ */
+public class PayloadCodecStats {
+  public static final String UNKNOWN_SCENARIO = "unknown";
+
+  // Upper bounds (exclusive) of the payload size classes, the last class is open-ended
+  private static final int[] SIZE_CLASS_LIMITS = {256, 1024, 4096, 16384};
+  private static final String[] SIZE_CLASS_NAMES = {"<256B", "<1KB", "<4KB", "<16KB", ">=16KB"};
+
+  private final String codecName;
+  private final ConcurrentHashMap<String, Counters[]> scenarios = new ConcurrentHashMap<>();
+
+  public PayloadCodecStats(String codecName) {
+    this.codecName = codecName;
+  }
+
+  void recordEncode(String scenario, int rawBytes, int encodedBytes, long nanos) {
+    Counters counters = countersFor(scenario, rawBytes);
+    counters.encoded.increment();
+    counters.rawBytes.add(rawBytes);
+    counters.encodedBytes.add(encodedBytes);
+    counters.encodeNanos.add(nanos);
+    if (encodedBytes != rawBytes) {
+      counters.compressed.increment();
+    }
+  }
+
+  void recordDecode(String scenario, int rawBytes, long nanos) {
+    Counters counters = countersFor(scenario, rawBytes);
+    counters.decoded.increment();
+    counters.decodeNanos.add(nanos);
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> byScenario = new TreeMap<>();
+    scenarios.forEach(
+        (scenario, classes) -> {
+          Map<String, Object> bySize = new LinkedHashMap<>();
+          for (int i = 0; i < classes.length; i++) {
+            if (classes[i].encoded.sum() + classes[i].decoded.sum() > 0) {
+              bySize.put(SIZE_CLASS_NAMES[i], classes[i].toMap());
+            }
+          }
+          byScenario.put(scenario, bySize);
+        });
+
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("codec", codecName);
+    stats.put("scenarios", byScenario);
+    return stats;
+  }
+
+  public void clear() {
+    scenarios.clear();
+  }
+
+  private Counters countersFor(String scenario, int rawBytes) {
+    Counters[] classes =
+        scenarios.computeIfAbsent(
+            scenario,
+            s -> {
+              Counters[] c = new Counters[SIZE_CLASS_NAMES.length];
+              for (int i = 0; i < c.length; i++) {
+                c[i] = new Counters();
+              }
+              return c;
+            });
+
+    int sizeClass = 0;
+    while (sizeClass < SIZE_CLASS_LIMITS.length && rawBytes >= SIZE_CLASS_LIMITS[sizeClass]) {
+      sizeClass++;
+    }
+    return classes[sizeClass];
+  }
+
+  private static final class Counters {
+    private final LongAdder encoded = new LongAdder();
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder encodedBytes = new LongAdder();
+    private final LongAdder encodeNanos = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+
+    private Map<String, Object> toMap() {
+      long encodedCount = encoded.sum();
+      long decodedCount = decoded.sum();
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("encoded", encodedCount);
+      map.put("compressed", compressed.sum());
+      map.put("decoded", decodedCount);
+      map.put("rawBytes", rawBytes.sum());
+      map.put("encodedBytes", encodedBytes.sum());
+      map.put("avgEncodeMicros", encodedCount == 0 ? 0.0 : encodeNanos.sum() / 1000.0 / encodedCount);
+      map.put("avgDecodeMicros", decodedCount == 0 ? 0.0 : decodeNanos.sum() / 1000.0 / decodedCount);
+      return map;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** Columnar latency samples of every run, one {@link ScenarioSamples} per scenario. */
+public class LatencySampleStore {
+  private final ConcurrentHashMap<String, ScenarioSamples> scenarios = new ConcurrentHashMap<>();
+
+  public void record(
+      String scenario,
+      String requestId,
+      int iteration,
+      long epochMillis,
+      double updateLatencyMs,
+      double workflowLatencyMs,
+      boolean completed) {
+    scenarios
+        .computeIfAbsent(scenario, ScenarioSamples::new)
+        .append(
+            requestId,
+            iteration,
+            epochMillis,
+            updateLatencyMs,
+            workflowLatencyMs,
+            completed ? ScenarioSamples.STATUS_COMPLETED : ScenarioSamples.STATUS_FAILED);
+  }
+
+  /** Null if the scenario has no samples. */
+  public ScenarioSamples get(String scenario) {
+    return scenarios.get(scenario);
+  }
+
+  public Map<String, Map<String, Object>> summaries() {
+    Map<String, Map<String, Object>> summaries = new TreeMap<>();
+    scenarios.forEach((scenario, samples) -> summaries.put(scenario, samples.summary()));
+    return summaries;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Throughput and latency of the last 1, 10 and 60 seconds per scenario, or any other key such as the
+ * task queue a run was routed to. Each scenario keeps a ring
+ * of per-second buckets holding a count, an error count and a log-linear latency histogram in
+ * atomic arrays, so recording is a handful of atomic increments and never takes a lock.
+ */
+public class RollingWindowMetrics {
+  private static final int[] WINDOWS_SECONDS = {1, 10, 60};
+
+  private final ConcurrentHashMap<String, ScenarioWindow> scenarios = new ConcurrentHashMap<>();
+
+  public void record(
+      String scenario, double updateLatencyMs, double workflowLatencyMs, boolean completed) {
+    scenarios
+        .computeIfAbsent(scenario, s -> new ScenarioWindow())
+        .record(
+            System.currentTimeMillis() / 1000, updateLatencyMs, workflowLatencyMs, completed);
+  }
+
+  /** Windows end at the last full second, the current second is still filling. */
+  public Map<String, Map<String, Object>> snapshot() {
+    long lastSecond = System.currentTimeMillis() / 1000 - 1;
+    Map<String, Map<String, Object>> snapshot = new TreeMap<>();
+    scenarios.forEach(
+        (scenario, window) -> {
+          Map<String, Object> windows = new LinkedHashMap<>();
+          for (int seconds : WINDOWS_SECONDS) {
+            windows.put(seconds + "s", window.summarize(lastSecond, seconds));
+          }
+          snapshot.put(scenario, windows);
+        });
+    return snapshot;
+  }
+
+  private static final class ScenarioWindow {
+    // Holds the 60 second window plus the second being recorded
+    private static final int BUCKETS = 64;
+    private static final int BUCKET_MASK = BUCKETS - 1;
+
+    // Four bins per power of two of microseconds: 25% resolution from 4us to over a minute
+    private static final int SUB_BITS = 2;
+    private static final int SUB_BINS = 1 << SUB_BITS;
+    private static final int BINS = 26 * SUB_BINS;
+
+    private static final int COUNT = 0;
+    private static final int ERRORS = 1;
+    private static final int UPDATE_BINS = 2;
+    private static final int WORKFLOW_BINS = UPDATE_BINS + BINS;
+    private static final int STRIDE = WORKFLOW_BINS + BINS;
+
+    private final AtomicLongArray seconds = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray values = new AtomicLongArray(BUCKETS * STRIDE);
+
+    void record(long second, double updateLatencyMs, double workflowLatencyMs, boolean completed) {
+      int base = bucketFor(second) * STRIDE;
+      values.incrementAndGet(base + COUNT);
+      if (!completed) {
+        values.incrementAndGet(base + ERRORS);
+        return;
+      }
+      // Scenarios without an update report an update latency of 0
+      if (updateLatencyMs > 0) {
+        values.incrementAndGet(base + UPDATE_BINS + binOf(updateLatencyMs));
+      }
+      values.incrementAndGet(base + WORKFLOW_BINS + binOf(workflowLatencyMs));
+    }
+
+    // The first recording of a new second claims the bucket and clears what the ring left in it.
+    // Increments racing with the clear can be lost, which only makes the counts slightly low.
+    private int bucketFor(long second) {
+      int bucket = (int) (second & BUCKET_MASK);
+      long stamp = seconds.get(bucket);
+      if (stamp < second && seconds.compareAndSet(bucket, stamp, second)) {
+        int base = bucket * STRIDE;
+        for (int i = 0; i < STRIDE; i++) {
+          values.set(base + i, 0);
+        }
+      }
+      return bucket;
+    }
+
+    Map<String, Object> summarize(long lastSecond, int windowSeconds) {
+      long count = 0;
+      long errors = 0;
+      long[] updateBins = new long[BINS];
+      long[] workflowBins = new long[BINS];
+      for (long second = lastSecond - windowSeconds + 1; second <= lastSecond; second++) {
+        int bucket = (int) (second & BUCKET_MASK);
+        if (seconds.get(bucket) != second) {
+          continue;
+        }
+        int base = bucket * STRIDE;
+        count += values.get(base + COUNT);
+        errors += values.get(base + ERRORS);
+        for (int bin = 0; bin < BINS; bin++) {
+          updateBins[bin] += values.get(base + UPDATE_BINS + bin);
+          workflowBins[bin] += values.get(base + WORKFLOW_BINS + bin);
+        }
+      }
+
+      Map<String, Object> summary = new LinkedHashMap<>();
+      summary.put("runs", count);
+      summary.put("errors", errors);
+      summary.put("runsPerSecond", (double) count / windowSeconds);
+      summary.put("updateLatencyMs", percentiles(updateBins));
+      summary.put("workflowLatencyMs", percentiles(workflowBins));
+      return summary;
+    }
+
+    private static Map<String, Object> percentiles(long[] bins) {
+      long total = 0;
+      for (long n : bins) {
+        total += n;
+      }
+      Map<String, Object> percentiles = new LinkedHashMap<>();
+      if (total == 0) {
+        return percentiles;
+      }
+      percentiles.put("p50", valueAt(bins, total, 0.50));
+      percentiles.put("p90", valueAt(bins, total, 0.90));
+      percentiles.put("p99", valueAt(bins, total, 0.99));
+      return percentiles;
+    }
+
+    // Upper bound of the bin holding the quantile
+    private static double valueAt(long[] bins, long total, double quantile) {
+      long rank = Math.max(1, (long) Math.ceil(quantile * total));
+      long seen = 0;
+      int bin = 0;
+      for (; bin < BINS - 1; bin++) {
+        seen += bins[bin];
+        if (seen >= rank) {
+          break;
+        }
+      }
+      int exponent = bin / SUB_BINS + SUB_BITS;
+      long upperMicros = (long) (SUB_BINS + bin % SUB_BINS + 1) << (exponent - SUB_BITS);
+      return upperMicros / 1000.0;
+    }
+
+    private static int binOf(double latencyMs) {
+      long micros = Math.max(SUB_BINS, (long) (latencyMs * 1000));
+      int exponent = 63 - Long.numberOfLeadingZeros(micros);
+      int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BINS - 1);
+      return Math.min(BINS - 1, (exponent - SUB_BITS) * SUB_BINS + sub);
+    }
+  }
+}
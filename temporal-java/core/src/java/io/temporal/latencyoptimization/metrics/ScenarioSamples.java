@@ -0,0 +1,246 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latency samples of one scenario stored column by column in fixed-size primitive chunks, about
+ * 33 bytes per sample. Appends are serialized per scenario; readers scan without locking up to the
+ * published size, which is written after the sample's columns.
+ */
+public final class ScenarioSamples {
+  public static final byte STATUS_COMPLETED = 0;
+  public static final byte STATUS_FAILED = 1;
+
+  private static final int CHUNK_SHIFT = 14;
+  private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final String scenario;
+  private final List<Chunk> chunks = new ArrayList<>();
+  // Request IDs are shared by every iteration of a request, so they are stored once
+  private final List<String> requestIds = new ArrayList<>();
+  private final Map<String, Integer> requestIndexes = new LinkedHashMap<>();
+  private volatile Chunk[] published = new Chunk[0];
+  private volatile int size;
+
+  ScenarioSamples(String scenario) {
+    this.scenario = scenario;
+  }
+
+  public String getScenario() {
+    return scenario;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  synchronized void append(
+      String requestId,
+      int iteration,
+      long epochMillis,
+      double updateLatencyMs,
+      double workflowLatencyMs,
+      byte status) {
+    int index = size;
+    int chunkIndex = index >>> CHUNK_SHIFT;
+    if (chunkIndex == chunks.size()) {
+      chunks.add(new Chunk());
+      published = chunks.toArray(new Chunk[0]);
+    }
+    Integer requestIndex = requestIndexes.get(requestId);
+    if (requestIndex == null) {
+      requestIndex = requestIds.size();
+      requestIds.add(requestId);
+      requestIndexes.put(requestId, requestIndex);
+    }
+
+    Chunk chunk = chunks.get(chunkIndex);
+    int offset = index & CHUNK_MASK;
+    chunk.epochMillis[offset] = epochMillis;
+    chunk.updateLatencyMs[offset] = updateLatencyMs;
+    chunk.workflowLatencyMs[offset] = workflowLatencyMs;
+    chunk.status[offset] = status;
+    chunk.requestIndex[offset] = requestIndex;
+    chunk.iteration[offset] = iteration;
+    size = index + 1;
+  }
+
+  /** Count, failures and latency distribution of the completed samples. */
+  public Map<String, Object> summary() {
+    int n = size;
+    Chunk[] snapshot = published;
+
+    int completed = 0;
+    for (int c = 0; c * CHUNK_SIZE < n; c++) {
+      byte[] status = snapshot[c].status;
+      int length = Math.min(CHUNK_SIZE, n - c * CHUNK_SIZE);
+      for (int i = 0; i < length; i++) {
+        completed += status[i] == STATUS_COMPLETED ? 1 : 0;
+      }
+    }
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("samples", n);
+    summary.put("failed", n - completed);
+    summary.put("updateLatencyMs", distribution(snapshot, n, completed, true));
+    summary.put("workflowLatencyMs", distribution(snapshot, n, completed, false));
+    return summary;
+  }
+
+  /** Samples {@code offset} to {@code offset + limit}, with their strings built on demand. */
+  public List<Sample> range(int offset, int limit) {
+    int n = size;
+    Chunk[] snapshot = published;
+    List<String> ids;
+    synchronized (this) {
+      ids = new ArrayList<>(requestIds);
+    }
+
+    List<Sample> samples = new ArrayList<>();
+    for (int index = Math.max(0, offset); index < n && samples.size() < limit; index++) {
+      Chunk chunk = snapshot[index >>> CHUNK_SHIFT];
+      int i = index & CHUNK_MASK;
+      samples.add(
+          new Sample(
+              ids.get(chunk.requestIndex[i]),
+              scenario,
+              chunk.iteration[i],
+              chunk.epochMillis[i],
+              chunk.updateLatencyMs[i],
+              chunk.workflowLatencyMs[i],
+              chunk.status[i]));
+    }
+    return samples;
+  }
+
+  private static Map<String, Object> distribution(
+      Chunk[] snapshot, int n, int completed, boolean update) {
+    double[] values = new double[completed];
+    double sum = 0;
+    int k = 0;
+    for (int c = 0; c * CHUNK_SIZE < n; c++) {
+      Chunk chunk = snapshot[c];
+      double[] column = update ? chunk.updateLatencyMs : chunk.workflowLatencyMs;
+      int length = Math.min(CHUNK_SIZE, n - c * CHUNK_SIZE);
+      for (int i = 0; i < length; i++) {
+        if (chunk.status[i] == STATUS_COMPLETED) {
+          values[k++] = column[i];
+          sum += column[i];
+        }
+      }
+    }
+
+    Map<String, Object> distribution = new LinkedHashMap<>();
+    if (values.length == 0) {
+      return distribution;
+    }
+    Arrays.sort(values);
+    distribution.put("mean", sum / values.length);
+    distribution.put("min", values[0]);
+    distribution.put("p50", percentile(values, 0.50));
+    distribution.put("p90", percentile(values, 0.90));
+    distribution.put("p99", percentile(values, 0.99));
+    distribution.put("max", values[values.length - 1]);
+    return distribution;
+  }
+
+  private static double percentile(double[] sorted, double quantile) {
+    int index = (int) Math.ceil(quantile * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+  }
+
+  private static final class Chunk {
+    private final long[] epochMillis = new long[CHUNK_SIZE];
+    private final double[] updateLatencyMs = new double[CHUNK_SIZE];
+    private final double[] workflowLatencyMs = new double[CHUNK_SIZE];
+    private final byte[] status = new byte[CHUNK_SIZE];
+    private final int[] requestIndex = new int[CHUNK_SIZE];
+    private final int[] iteration = new int[CHUNK_SIZE];
+  }
+
+  /** One sample materialized from the columns. */
+  public static final class Sample {
+    private final String requestId;
+    private final String scenario;
+    private final int iteration;
+    private final long epochMillis;
+    private final double updateLatencyMs;
+    private final double workflowLatencyMs;
+    private final byte status;
+
+    private Sample(
+        String requestId,
+        String scenario,
+        int iteration,
+        long epochMillis,
+        double updateLatencyMs,
+        double workflowLatencyMs,
+        byte status) {
+      this.requestId = requestId;
+      this.scenario = scenario;
+      this.iteration = iteration;
+      this.epochMillis = epochMillis;
+      this.updateLatencyMs = updateLatencyMs;
+      this.workflowLatencyMs = workflowLatencyMs;
+      this.status = status;
+    }
+
+    public String getRequestId() {
+      return requestId;
+    }
+
+    public String getScenario() {
+      return scenario;
+    }
+
+    public int getIteration() {
+      return iteration;
+    }
+
+    /** The key the run was started with, {@code <request id>-<scenario>-iteration-<n>}. */
+    public String getRunKey() {
+      return requestId + "-" + scenario + "-iteration-" + iteration;
+    }
+
+    public long getEpochMillis() {
+      return epochMillis;
+    }
+
+    public double getUpdateLatencyMs() {
+      return updateLatencyMs;
+    }
+
+    public double getWorkflowLatencyMs() {
+      return workflowLatencyMs;
+    }
+
+    public boolean isCompleted() {
+      return status == STATUS_COMPLETED;
+    }
+  }
+}
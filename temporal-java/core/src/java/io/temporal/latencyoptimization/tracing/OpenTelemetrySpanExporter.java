@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.tracing;
+
+import io.opentelemetry.api.GlobalOpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Re-emits recorded spans through the global OpenTelemetry tracer with their original timestamps.
+ * Without an OpenTelemetry SDK or agent on the classpath the global tracer is a no-op.
+ */
+public class OpenTelemetrySpanExporter implements Consumer<TraceSpan> {
+  private static final AttributeKey<String> WORKFLOW_ID =
+      AttributeKey.stringKey("temporal.workflow_id");
+  private static final AttributeKey<String> COMPONENT = AttributeKey.stringKey("component");
+
+  private final Tracer tracer = GlobalOpenTelemetry.getTracer("io.temporal.latencyoptimization");
+
+  @Override
+  public void accept(TraceSpan traceSpan) {
+    Span span =
+        tracer
+            .spanBuilder(traceSpan.getName())
+            .setSpanKind(
+                traceSpan.getComponent() == TraceSpan.Component.CLIENT
+                    ? SpanKind.CLIENT
+                    : SpanKind.INTERNAL)
+            .setStartTimestamp(traceSpan.getStartEpochNanos(), TimeUnit.NANOSECONDS)
+            .setAttribute(WORKFLOW_ID, traceSpan.getWorkflowId())
+            .setAttribute(COMPONENT, traceSpan.getComponent().name().toLowerCase())
+            .startSpan();
+    if (traceSpan.isFailed()) {
+      span.setStatus(StatusCode.ERROR);
+    }
+    span.end(
+        traceSpan.getStartEpochNanos() + traceSpan.getDurationNanos(), TimeUnit.NANOSECONDS);
+  }
+}
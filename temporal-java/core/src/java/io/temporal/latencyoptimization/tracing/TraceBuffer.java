@@ -0,0 +1,112 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.tracing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-size ring buffer of the most recent spans. Recording claims a slot with one atomic
+ * increment and never blocks; once the buffer wraps, the oldest spans are overwritten.
+ */
+public final class TraceBuffer {
+  // Epoch time taken once, spans are timed with nanoTime relative to it
+  private static final long EPOCH_BASE_NANOS = System.currentTimeMillis() * 1_000_000L;
+  private static final long NANO_BASE = System.nanoTime();
+
+  private final AtomicReferenceArray<TraceSpan> slots;
+  private final int mask;
+  private final AtomicLong next = new AtomicLong();
+  private final List<Consumer<TraceSpan>> exporters = new CopyOnWriteArrayList<>();
+
+  /** @param capacity rounded up to a power of two */
+  public TraceBuffer(int capacity) {
+    int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+  }
+
+  /** Converts a {@link System#nanoTime()} reading to nanoseconds since the epoch. */
+  public static long toEpochNanos(long nanoTime) {
+    return EPOCH_BASE_NANOS + (nanoTime - NANO_BASE);
+  }
+
+  /** Forwards every recorded span, e.g. to OpenTelemetry, on the recording thread. */
+  public void addExporter(Consumer<TraceSpan> exporter) {
+    exporters.add(exporter);
+  }
+
+  public void record(
+      String workflowId,
+      TraceSpan.Component component,
+      String name,
+      long startNanoTime,
+      boolean failed) {
+    long end = System.nanoTime();
+    TraceSpan span =
+        new TraceSpan(
+            workflowId, component, name, toEpochNanos(startNanoTime), end - startNanoTime, failed);
+    slots.set((int) (next.getAndIncrement() & mask), span);
+    for (Consumer<TraceSpan> exporter : exporters) {
+      exporter.accept(span);
+    }
+  }
+
+  /** The most recently recorded spans, newest first. */
+  public List<TraceSpan> recent(int limit) {
+    long last = next.get();
+    long first = Math.max(0, last - Math.min(limit, slots.length()));
+    List<TraceSpan> spans = new ArrayList<>();
+    for (long seq = last - 1; seq >= first; seq--) {
+      TraceSpan span = slots.get((int) (seq & mask));
+      if (span != null) {
+        spans.add(span);
+      }
+    }
+    return spans;
+  }
+
+  /** Every span still in the buffer for {@code workflowId}, in start order. */
+  public List<TraceSpan> forWorkflow(String workflowId) {
+    List<TraceSpan> spans = new ArrayList<>();
+    for (int i = 0; i < slots.length(); i++) {
+      TraceSpan span = slots.get(i);
+      if (span != null && workflowId.equals(span.getWorkflowId())) {
+        spans.add(span);
+      }
+    }
+    spans.sort(Comparator.comparingLong(TraceSpan::getStartEpochNanos));
+    return spans;
+  }
+
+  public long getRecordedCount() {
+    return next.get();
+  }
+
+  public int getCapacity() {
+    return slots.length();
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.tracing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** One timed call, correlated with the others of the same transaction by workflow ID. */
+public final class TraceSpan {
+  public enum Component {
+    CLIENT,
+    WORKFLOW,
+    ACTIVITY
+  }
+
+  private final String workflowId;
+  private final Component component;
+  private final String name;
+  private final long startEpochNanos;
+  private final long durationNanos;
+  private final boolean failed;
+  private final String thread;
+
+  public TraceSpan(
+      String workflowId,
+      Component component,
+      String name,
+      long startEpochNanos,
+      long durationNanos,
+      boolean failed) {
+    this.workflowId = workflowId;
+    this.component = component;
+    this.name = name;
+    this.startEpochNanos = startEpochNanos;
+    this.durationNanos = durationNanos;
+    this.failed = failed;
+    this.thread = Thread.currentThread().getName();
+  }
+
+  @JsonProperty("workflowId")
+  public String getWorkflowId() {
+    return workflowId;
+  }
+
+  @JsonProperty("component")
+  public Component getComponent() {
+    return component;
+  }
+
+  @JsonProperty("name")
+  public String getName() {
+    return name;
+  }
+
+  @JsonProperty("startEpochNanos")
+  public long getStartEpochNanos() {
+    return startEpochNanos;
+  }
+
+  @JsonProperty("durationNanos")
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  @JsonProperty("durationMs")
+  public double getDurationMs() {
+    return durationNanos / 1_000_000.0;
+  }
+
+  @JsonProperty("failed")
+  public boolean isFailed() {
+    return failed;
+  }
+
+  @JsonProperty("thread")
+  public String getThread() {
+    return thread;
+  }
+}
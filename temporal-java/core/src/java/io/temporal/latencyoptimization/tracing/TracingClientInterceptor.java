@@ -0,0 +1,133 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.tracing;
+
+import io.temporal.client.WorkflowUpdateHandle;
+import io.temporal.common.interceptors.WorkflowClientCallsInterceptor;
+import io.temporal.common.interceptors.WorkflowClientCallsInterceptorBase;
+import io.temporal.common.interceptors.WorkflowClientInterceptorBase;
+import java.util.concurrent.TimeoutException;
+
+/** Times the start, update and result calls the benchmark runners make through the client. */
+public class TracingClientInterceptor extends WorkflowClientInterceptorBase {
+  private final TraceBuffer buffer;
+
+  public TracingClientInterceptor(TraceBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public WorkflowClientCallsInterceptor workflowClientCallsInterceptor(
+      WorkflowClientCallsInterceptor next) {
+    return new CallsInterceptor(next);
+  }
+
+  private final class CallsInterceptor extends WorkflowClientCallsInterceptorBase {
+    private CallsInterceptor(WorkflowClientCallsInterceptor next) {
+      super(next);
+    }
+
+    @Override
+    public WorkflowStartOutput start(WorkflowStartInput input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        WorkflowStartOutput output = super.start(input);
+        failed = false;
+        return output;
+      } finally {
+        buffer.record(input.getWorkflowId(), TraceSpan.Component.CLIENT, "start", start, failed);
+      }
+    }
+
+    @Override
+    public <R> WorkflowUpdateWithStartOutput<R> updateWithStart(
+        WorkflowUpdateWithStartInput<R> input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        WorkflowUpdateWithStartOutput<R> output = super.updateWithStart(input);
+        failed = false;
+        return output;
+      } finally {
+        buffer.record(
+            input.getWorkflowStartInput().getWorkflowId(),
+            TraceSpan.Component.CLIENT,
+            "updateWithStart",
+            start,
+            failed);
+      }
+    }
+
+    @Override
+    public <R> WorkflowUpdateHandle<R> startUpdate(StartUpdateInput<R> input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        WorkflowUpdateHandle<R> handle = super.startUpdate(input);
+        failed = false;
+        return handle;
+      } finally {
+        buffer.record(
+            input.getWorkflowExecution().getWorkflowId(),
+            TraceSpan.Component.CLIENT,
+            "update:" + input.getUpdateName(),
+            start,
+            failed);
+      }
+    }
+
+    @Override
+    public <R> GetResultOutput<R> getResult(GetResultInput<R> input) throws TimeoutException {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        GetResultOutput<R> output = super.getResult(input);
+        failed = false;
+        return output;
+      } finally {
+        buffer.record(
+            input.getWorkflowExecution().getWorkflowId(),
+            TraceSpan.Component.CLIENT,
+            "getResult",
+            start,
+            failed);
+      }
+    }
+
+    @Override
+    public <R> GetResultAsyncOutput<R> getResultAsync(GetResultInput<R> input) {
+      long start = System.nanoTime();
+      GetResultAsyncOutput<R> output = super.getResultAsync(input);
+      output
+          .getResult()
+          .whenComplete(
+              (result, failure) ->
+                  buffer.record(
+                      input.getWorkflowExecution().getWorkflowId(),
+                      TraceSpan.Component.CLIENT,
+                      "getResult",
+                      start,
+                      failure != null));
+      return output;
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.tracing;
+
+import io.temporal.activity.ActivityExecutionContext;
+import io.temporal.activity.ActivityInfo;
+import io.temporal.common.interceptors.ActivityInboundCallsInterceptor;
+import io.temporal.common.interceptors.ActivityInboundCallsInterceptorBase;
+import io.temporal.common.interceptors.WorkerInterceptorBase;
+import io.temporal.common.interceptors.WorkflowInboundCallsInterceptor;
+import io.temporal.common.interceptors.WorkflowInboundCallsInterceptorBase;
+import io.temporal.common.interceptors.WorkflowOutboundCallsInterceptor;
+import io.temporal.common.interceptors.WorkflowOutboundCallsInterceptorBase;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+import io.temporal.workflow.unsafe.WorkflowUnsafe;
+
+/**
+ * Times activity executions on the worker and, inside workflows, the workflow method, update
+ * handlers and each activity from scheduling to the result reaching the workflow. Interceptors
+ * don't see individual workflow tasks, so the workflow-side spans are the nearest equivalent.
+ * Workflow-side spans are only recorded outside replay, so a cache miss doesn't record them again.
+ */
+public class TracingWorkerInterceptor extends WorkerInterceptorBase {
+  private final TraceBuffer buffer;
+
+  public TracingWorkerInterceptor(TraceBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public WorkflowInboundCallsInterceptor interceptWorkflow(WorkflowInboundCallsInterceptor next) {
+    return new WorkflowInbound(next);
+  }
+
+  @Override
+  public ActivityInboundCallsInterceptor interceptActivity(ActivityInboundCallsInterceptor next) {
+    return new ActivityInbound(next);
+  }
+
+  private void recordWorkflowSpan(String name, long start, boolean failed) {
+    if (!WorkflowUnsafe.isReplaying()) {
+      buffer.record(
+          Workflow.getInfo().getWorkflowId(), TraceSpan.Component.WORKFLOW, name, start, failed);
+    }
+  }
+
+  private final class WorkflowInbound extends WorkflowInboundCallsInterceptorBase {
+    private WorkflowInbound(WorkflowInboundCallsInterceptor next) {
+      super(next);
+    }
+
+    @Override
+    public void init(WorkflowOutboundCallsInterceptor outboundCalls) {
+      super.init(new WorkflowOutbound(outboundCalls));
+    }
+
+    @Override
+    public WorkflowOutput execute(WorkflowInput input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        WorkflowOutput output = super.execute(input);
+        failed = false;
+        return output;
+      } finally {
+        recordWorkflowSpan("run", start, failed);
+      }
+    }
+
+    @Override
+    public UpdateOutput executeUpdate(UpdateInput input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        UpdateOutput output = super.executeUpdate(input);
+        failed = false;
+        return output;
+      } finally {
+        recordWorkflowSpan("update:" + input.getUpdateName(), start, failed);
+      }
+    }
+  }
+
+  private final class WorkflowOutbound extends WorkflowOutboundCallsInterceptorBase {
+    private WorkflowOutbound(WorkflowOutboundCallsInterceptor next) {
+      super(next);
+    }
+
+    @Override
+    public <R> ActivityOutput<R> executeActivity(ActivityInput<R> input) {
+      long start = System.nanoTime();
+      ActivityOutput<R> output = super.executeActivity(input);
+      whenDone(output.getResult(), "activity:" + input.getActivityName(), start);
+      return output;
+    }
+
+    @Override
+    public <R> LocalActivityOutput<R> executeLocalActivity(LocalActivityInput<R> input) {
+      long start = System.nanoTime();
+      LocalActivityOutput<R> output = super.executeLocalActivity(input);
+      whenDone(output.getResult(), "localActivity:" + input.getActivityName(), start);
+      return output;
+    }
+
+    private <R> void whenDone(Promise<R> result, String name, long start) {
+      result.handle(
+          (value, failure) -> {
+            recordWorkflowSpan(name, start, failure != null);
+            return null;
+          });
+    }
+  }
+
+  private final class ActivityInbound extends ActivityInboundCallsInterceptorBase {
+    private ActivityInfo info;
+
+    private ActivityInbound(ActivityInboundCallsInterceptor next) {
+      super(next);
+    }
+
+    @Override
+    public void init(ActivityExecutionContext context) {
+      this.info = context.getInfo();
+      super.init(context);
+    }
+
+    @Override
+    public ActivityOutput execute(ActivityInput input) {
+      long start = System.nanoTime();
+      boolean failed = true;
+      try {
+        ActivityOutput output = super.execute(input);
+        failed = false;
+        return output;
+      } finally {
+        String name =
+            (info.isLocal() ? "localActivity:" : "activity:")
+                + info.getActivityType()
+                + (info.getAttempt() > 1 ? " (attempt " + info.getAttempt() + ")" : "");
+        buffer.record(info.getWorkflowId(), TraceSpan.Component.ACTIVITY, name, start, failed);
+      }
+    }
+  }
+}
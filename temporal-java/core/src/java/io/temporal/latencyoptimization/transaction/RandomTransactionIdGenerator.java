@@ -0,0 +1,32 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.transaction;
+
+/**
+ * The original generator: "TXID" and ten random digits. Kept for comparison, it formats on every
+ * call, shares one {@code Math.random} generator across threads and can produce collisions.
+ */
+public class RandomTransactionIdGenerator implements TransactionIdGenerator {
+  @Override
+  public String nextId() {
+    return "TXID" + String.format("%010d", (long) (Math.random() * 1_000_000_0000L));
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.transaction;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Snowflake-style generator: 41 bits of milliseconds since {@link #EPOCH_MILLIS}, 10 bits of worker
+ * ID and 12 bits of sequence. IDs are unique across workers with distinct worker IDs and strictly
+ * increasing per worker. The timestamp and sequence live in one {@link AtomicLong} updated by CAS,
+ * so there is no lock; when a millisecond's sequence runs out, or the clock steps back, the logical
+ * timestamp moves ahead of the wall clock instead of waiting for it.
+ *
+ * <p>IDs are "TXID" followed by 19 zero-padded digits, written into a reused per-thread buffer,
+ * so the only allocation per call is the resulting string.
+ */
+public class SnowflakeTransactionIdGenerator implements TransactionIdGenerator {
+  // 2024-01-01T00:00:00Z
+  static final long EPOCH_MILLIS = 1_704_067_200_000L;
+  private static final int WORKER_ID_BITS = 10;
+  private static final int SEQUENCE_BITS = 12;
+  public static final int MAX_WORKER_ID = (1 << WORKER_ID_BITS) - 1;
+  private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+  private static final String PREFIX = "TXID";
+  private static final int DIGITS = 19;
+  private static final ThreadLocal<char[]> BUFFER =
+      ThreadLocal.withInitial(
+          () -> {
+            char[] buffer = new char[PREFIX.length() + DIGITS];
+            PREFIX.getChars(0, PREFIX.length(), buffer, 0);
+            return buffer;
+          });
+
+  private static final SnowflakeTransactionIdGenerator DEFAULT =
+      new SnowflakeTransactionIdGenerator(defaultWorkerId());
+
+  private final long workerBits;
+  // Logical timestamp in the high bits, sequence in the low SEQUENCE_BITS
+  private final AtomicLong state = new AtomicLong();
+
+  public SnowflakeTransactionIdGenerator(int workerId) {
+    if (workerId < 0 || workerId > MAX_WORKER_ID) {
+      throw new IllegalArgumentException(
+          "Worker ID must be between 0 and " + MAX_WORKER_ID + ": " + workerId);
+    }
+    this.workerBits = (long) workerId << SEQUENCE_BITS;
+  }
+
+  /** Worker ID from TEMPORAL_WORKER_ID, or derived from the process name when it isn't set. */
+  public static SnowflakeTransactionIdGenerator getDefault() {
+    return DEFAULT;
+  }
+
+  @Override
+  public String nextId() {
+    long id = nextRawId();
+
+    char[] buffer = BUFFER.get();
+    for (int i = buffer.length - 1; i >= PREFIX.length(); i--) {
+      buffer[i] = (char) ('0' + (id % 10));
+      id /= 10;
+    }
+    return new String(buffer);
+  }
+
+  long nextRawId() {
+    long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+    long current;
+    long next;
+    do {
+      current = state.get();
+      // A new millisecond starts at sequence 0, otherwise keep counting on the last timestamp
+      next = now > current ? now : current + 1;
+    } while (!state.compareAndSet(current, next));
+
+    long timestamp = next >>> SEQUENCE_BITS;
+    return (timestamp << (WORKER_ID_BITS + SEQUENCE_BITS)) | workerBits | (next & SEQUENCE_MASK);
+  }
+
+  private static int defaultWorkerId() {
+    String configured = System.getenv("TEMPORAL_WORKER_ID");
+    if (configured != null && !configured.isEmpty()) {
+      return Integer.parseInt(configured);
+    }
+    // "pid@hostname", distinct enough for a handful of benchmark workers
+    return ManagementFactory.getRuntimeMXBean().getName().hashCode() & MAX_WORKER_ID;
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.transaction;
+
+import com.google.protobuf.ByteString;
+import io.temporal.api.common.v1.Payload;
+import io.temporal.common.converter.DataConverterException;
+import io.temporal.common.converter.EncodingKeys;
+import io.temporal.common.converter.PayloadConverter;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Optional;
+
+/**
+ * Writes {@link Transaction}, {@link TransactionRequest} and {@link TxResult} in a fixed binary
+ * layout instead of JSON: a format version byte, a one byte type tag, then the fields in declaration
+ * order, with strings as a presence flag plus modified UTF-8. Every other type is left to the JSON
+ * converter. Any change to a layout needs a new format version, and payloads of a version this
+ * converter doesn't know are rejected rather than misread.
+ */
+public class TransactionPayloadConverter implements PayloadConverter {
+  public static final String ENCODING_TYPE = "binary/tx";
+  private static final ByteString ENCODING = ByteString.copyFromUtf8(ENCODING_TYPE);
+
+  // Versions start above the type tags, so payloads written before the version byte existed, which
+  // start with a tag, are rejected too
+  private static final byte FORMAT_VERSION = 0x10;
+
+  private static final byte TAG_TRANSACTION = 1;
+  private static final byte TAG_TRANSACTION_REQUEST = 2;
+  private static final byte TAG_TX_RESULT = 3;
+
+  @Override
+  public String getEncodingType() {
+    return ENCODING_TYPE;
+  }
+
+  @Override
+  public Optional<Payload> toData(Object value) throws DataConverterException {
+    if (!(value instanceof Transaction
+        || value instanceof TransactionRequest
+        || value instanceof TxResult)) {
+      return Optional.empty();
+    }
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(FORMAT_VERSION);
+      if (value instanceof Transaction) {
+        Transaction tx = (Transaction) value;
+        out.writeByte(TAG_TRANSACTION);
+        writeString(out, tx.getId());
+        writeString(out, tx.getSourceAccount());
+        writeString(out, tx.getTargetAccount());
+        out.writeInt(tx.getAmount());
+      } else if (value instanceof TransactionRequest) {
+        TransactionRequest request = (TransactionRequest) value;
+        out.writeByte(TAG_TRANSACTION_REQUEST);
+        writeString(out, request.getSourceAccount());
+        writeString(out, request.getTargetAccount());
+        out.writeInt(request.getAmount());
+        out.writeLong(request.getUpdateBudgetMs());
+        writeString(out, request.getRequestKey());
+      } else {
+        TxResult result = (TxResult) value;
+        out.writeByte(TAG_TX_RESULT);
+        writeString(out, result.getTransactionId());
+        writeString(out, result.getStatus());
+      }
+    } catch (IOException e) {
+      throw new DataConverterException(e);
+    }
+
+    return Optional.of(
+        Payload.newBuilder()
+            .putMetadata(EncodingKeys.METADATA_ENCODING_KEY, ENCODING)
+            .setData(ByteString.copyFrom(bytes.toByteArray()))
+            .build());
+  }
+
+  @Override
+  public <T> T fromData(Payload content, Class<T> valueClass, Type valueType)
+      throws DataConverterException {
+    try (DataInputStream in = new DataInputStream(content.getData().newInput())) {
+      byte version = in.readByte();
+      if (version != FORMAT_VERSION) {
+        throw new DataConverterException(
+            "Unsupported " + ENCODING_TYPE + " payload format version: " + version);
+      }
+      Object value;
+      byte tag = in.readByte();
+      switch (tag) {
+        case TAG_TRANSACTION:
+          value = new Transaction(readString(in), readString(in), readString(in), in.readInt());
+          break;
+        case TAG_TRANSACTION_REQUEST:
+          value =
+              new TransactionRequest(
+                  readString(in), readString(in), in.readInt(), in.readLong(), readString(in));
+          break;
+        case TAG_TX_RESULT:
+          value = new TxResult(readString(in), readString(in));
+          break;
+        default:
+          throw new DataConverterException("Unknown transaction payload tag: " + tag);
+      }
+
+      if (!valueClass.isInstance(value)) {
+        throw new DataConverterException(
+            "Can't convert " + value.getClass().getSimpleName() + " payload to " + valueClass);
+      }
+      return valueClass.cast(value);
+    } catch (IOException e) {
+      throw new DataConverterException(content, valueClass, e);
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
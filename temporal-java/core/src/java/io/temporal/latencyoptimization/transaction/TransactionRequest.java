@@ -26,15 +26,27 @@ public final class TransactionRequest {
   private final String sourceAccount;
   private final String targetAccount;
   private final int amount;
+  // Latency target for the early-return update, 0 means no budget
+  private final long updateBudgetMs;
+  // Client-supplied key that identifies retries of the same transfer, null when not deduplicated
+  private final String requestKey;
+
+  public TransactionRequest(String sourceAccount, String targetAccount, int amount) {
+    this(sourceAccount, targetAccount, amount, 0, null);
+  }
 
   @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
   public TransactionRequest(
       @JsonProperty("sourceAccount") String sourceAccount,
       @JsonProperty("targetAccount") String targetAccount,
-      @JsonProperty("amount") int amount) {
+      @JsonProperty("amount") int amount,
+      @JsonProperty("updateBudgetMs") long updateBudgetMs,
+      @JsonProperty("requestKey") String requestKey) {
     this.sourceAccount = sourceAccount;
     this.targetAccount = targetAccount;
     this.amount = amount;
+    this.updateBudgetMs = updateBudgetMs;
+    this.requestKey = requestKey;
   }
 
   @JsonProperty("sourceAccount")
@@ -52,10 +64,20 @@ public final class TransactionRequest {
     return amount;
   }
 
+  @JsonProperty("updateBudgetMs")
+  public long getUpdateBudgetMs() {
+    return updateBudgetMs;
+  }
+
+  @JsonProperty("requestKey")
+  public String getRequestKey() {
+    return requestKey;
+  }
+
   @Override
   public String toString() {
     return String.format(
-        "TransactionRequest{sourceAccount='%s', targetAccount='%s', amount=%d}",
-        sourceAccount, targetAccount, amount);
+        "TransactionRequest{sourceAccount='%s', targetAccount='%s', amount=%d, updateBudgetMs=%d, requestKey='%s'}",
+        sourceAccount, targetAccount, amount, updateBudgetMs, requestKey);
   }
 }
@@ -0,0 +1,254 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.latencyoptimization.transaction.Transaction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory account ledger used as a stand-in for the downstream database. Init reserves the
+ * amount on the source account, cancel releases the reservation and complete moves it to the target
+ * account. Accounts are guarded by a fixed set of striped locks, a transfer that touches two
+ * stripes takes them in index order so concurrent transfers can't deadlock.
+ *
+ * <p>With a hot account ratio, that share of transfers is credited to {@link #HOT_ACCOUNT} instead
+ * of its target, concentrating settlement on one row the way a popular merchant account would.
+ */
+public class AccountLedger {
+  public static final String HOT_ACCOUNT = "hot-account";
+
+  private final ReentrantLock[] stripes;
+  private final long initialBalance;
+  private final double hotAccountRatio;
+  private final long lockHoldNanos;
+
+  private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+  // Reservations by transaction ID, between init and complete or cancel
+  private final ConcurrentHashMap<String, Reservation> reservations = new ConcurrentHashMap<>();
+
+  private final LongAdder reserved = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder settled = new LongAdder();
+  private final LongAdder released = new LongAdder();
+  private final LongAdder lockAcquisitions = new LongAdder();
+  private final LongAdder contendedAcquisitions = new LongAdder();
+  private final LongAdder lockWaitNanos = new LongAdder();
+
+  /**
+   * @param stripeCount number of locks, rounded up to a power of two
+   * @param initialBalance balance of an account the first time it is seen
+   * @param hotAccountRatio share of transfers, from 0 to 1, credited to the hot account
+   * @param lockHoldMicros time each update holds its locks, simulating a row write
+   */
+  public AccountLedger(
+      int stripeCount, long initialBalance, double hotAccountRatio, long lockHoldMicros) {
+    int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+    this.stripes = new ReentrantLock[size];
+    for (int i = 0; i < stripes.length; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    this.initialBalance = initialBalance;
+    this.hotAccountRatio = hotAccountRatio;
+    this.lockHoldNanos = TimeUnit.MICROSECONDS.toNanos(lockHoldMicros);
+  }
+
+  /**
+   * Reserves the amount on the source account. Repeating a reservation for the same transaction is
+   * a no-op.
+   *
+   * @return false if the source account doesn't have enough available balance
+   */
+  public boolean reserve(Transaction tx) {
+    if (reservations.containsKey(tx.getId())) {
+      return true;
+    }
+
+    Account source = account(tx.getSourceAccount());
+    ReentrantLock lock = stripeOf(tx.getSourceAccount());
+    acquire(lock);
+    try {
+      if (reservations.containsKey(tx.getId())) {
+        return true;
+      }
+      if (source.available() < tx.getAmount()) {
+        rejected.increment();
+        return false;
+      }
+      holdLock();
+      source.held += tx.getAmount();
+      reservations.put(
+          tx.getId(), new Reservation(tx.getSourceAccount(), creditAccount(tx), tx.getAmount()));
+    } finally {
+      lock.unlock();
+    }
+    reserved.increment();
+    return true;
+  }
+
+  /** Drops the reservation of a cancelled transaction, if it had one. */
+  public void release(String txId) {
+    Reservation reservation = reservations.remove(txId);
+    if (reservation == null) {
+      return;
+    }
+
+    Account source = account(reservation.source);
+    ReentrantLock lock = stripeOf(reservation.source);
+    acquire(lock);
+    try {
+      holdLock();
+      source.held -= reservation.amount;
+    } finally {
+      lock.unlock();
+    }
+    released.increment();
+  }
+
+  /** Debits the reserved amount from the source and credits the target in one step. */
+  public void settle(String txId) {
+    Reservation reservation = reservations.remove(txId);
+    if (reservation == null) {
+      // Already settled, or reserved before a worker restart
+      return;
+    }
+
+    Account source = account(reservation.source);
+    Account target = account(reservation.target);
+    int first = stripeIndex(reservation.source);
+    int second = stripeIndex(reservation.target);
+    if (first > second) {
+      int swap = first;
+      first = second;
+      second = swap;
+    }
+
+    acquire(stripes[first]);
+    if (second != first) {
+      acquire(stripes[second]);
+    }
+    try {
+      holdLock();
+      source.held -= reservation.amount;
+      source.balance -= reservation.amount;
+      target.balance += reservation.amount;
+    } finally {
+      if (second != first) {
+        stripes[second].unlock();
+      }
+      stripes[first].unlock();
+    }
+    settled.increment();
+  }
+
+  public Map<String, Object> getStats() {
+    long acquisitions = lockAcquisitions.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("stripes", stripes.length);
+    stats.put("hotAccountRatio", hotAccountRatio);
+    stats.put("accounts", accounts.size());
+    stats.put("openReservations", reservations.size());
+    stats.put("reserved", reserved.sum());
+    stats.put("rejected", rejected.sum());
+    stats.put("settled", settled.sum());
+    stats.put("released", released.sum());
+    stats.put("lockAcquisitions", acquisitions);
+    stats.put("contendedAcquisitions", contendedAcquisitions.sum());
+    stats.put(
+        "avgLockWaitMicros",
+        acquisitions == 0 ? 0.0 : lockWaitNanos.sum() / 1000.0 / acquisitions);
+    Account hot = accounts.get(HOT_ACCOUNT);
+    if (hot != null) {
+      stats.put("hotAccountBalance", hot.balance);
+    }
+    return stats;
+  }
+
+  private String creditAccount(Transaction tx) {
+    if (hotAccountRatio <= 0) {
+      return tx.getTargetAccount();
+    }
+    // Decided by the transaction ID so a retried reservation picks the same account
+    double draw = (tx.getId().hashCode() & 0x7fffffff) / (double) Integer.MAX_VALUE;
+    return draw < hotAccountRatio ? HOT_ACCOUNT : tx.getTargetAccount();
+  }
+
+  private Account account(String name) {
+    return accounts.computeIfAbsent(name, n -> new Account(initialBalance));
+  }
+
+  private int stripeIndex(String account) {
+    int h = account.hashCode();
+    return (h ^ (h >>> 16)) & (stripes.length - 1);
+  }
+
+  private ReentrantLock stripeOf(String account) {
+    return stripes[stripeIndex(account)];
+  }
+
+  private void acquire(ReentrantLock lock) {
+    lockAcquisitions.increment();
+    if (lock.tryLock()) {
+      return;
+    }
+    contendedAcquisitions.increment();
+    long start = System.nanoTime();
+    lock.lock();
+    lockWaitNanos.add(System.nanoTime() - start);
+  }
+
+  private void holdLock() {
+    if (lockHoldNanos > 0) {
+      LockSupport.parkNanos(lockHoldNanos);
+    }
+  }
+
+  // Fields are only read and written while holding the account's stripe lock
+  private static final class Account {
+    private long balance;
+    private long held;
+
+    private Account(long balance) {
+      this.balance = balance;
+    }
+
+    private long available() {
+      return balance - held;
+    }
+  }
+
+  private static final class Reservation {
+    private final String source;
+    private final String target;
+    private final int amount;
+
+    private Reservation(String source, String target, int amount) {
+      this.source = source;
+      this.target = target;
+      this.amount = amount;
+    }
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Merges concurrent single-item calls from different activity executions into one batch call.
+ * A batch is dispatched when it reaches {@code maxBatchSize} or when the first item in it has
+ * waited {@code windowMillis}, whichever comes first. The batch call returns one output per input,
+ * in order, and each caller gets its own; only a batch call that throws fails every caller.
+ */
+public class ActivityCoalescer<I, O> {
+  private final String name;
+  private final Function<List<I>, List<O>> batchCall;
+  private final long windowMillis;
+  private final int maxBatchSize;
+  private final ScheduledExecutorService windowTimer;
+  private final ExecutorService downstream;
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong batches = new AtomicLong();
+
+  private List<PendingCall<I, O>> pending = new ArrayList<>();
+
+  public ActivityCoalescer(
+      String name,
+      Function<List<I>, List<O>> batchCall,
+      long windowMillis,
+      int maxBatchSize,
+      ScheduledExecutorService windowTimer,
+      ExecutorService downstream) {
+    this.name = name;
+    this.batchCall = batchCall;
+    this.windowMillis = windowMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.windowTimer = windowTimer;
+    this.downstream = downstream;
+  }
+
+  /** Blocks the calling activity thread until the batch containing {@code input} completes. */
+  public O call(I input) {
+    try {
+      return submit(input).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  public CompletableFuture<O> submit(I input) {
+    PendingCall<I, O> call = new PendingCall<>(input);
+    List<PendingCall<I, O>> full = null;
+
+    synchronized (this) {
+      pending.add(call);
+      if (pending.size() >= maxBatchSize) {
+        full = pending;
+        pending = new ArrayList<>();
+      } else if (pending.size() == 1) {
+        List<PendingCall<I, O>> window = pending;
+        windowTimer.schedule(() -> flush(window), windowMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+
+    calls.incrementAndGet();
+    if (full != null) {
+      dispatch(full);
+    }
+    return call.result;
+  }
+
+  public Map<String, Object> getStats() {
+    long callCount = calls.get();
+    long batchCount = batches.get();
+    return Map.of(
+        "name", name,
+        "calls", callCount,
+        "batches", batchCount,
+        "averageBatchSize", batchCount == 0 ? 0.0 : (double) callCount / batchCount);
+  }
+
+  private void flush(List<PendingCall<I, O>> window) {
+    synchronized (this) {
+      // The window was already dispatched because it filled up before the timer fired
+      if (pending != window) {
+        return;
+      }
+      pending = new ArrayList<>();
+    }
+    dispatch(window);
+  }
+
+  private void dispatch(List<PendingCall<I, O>> batch) {
+    batches.incrementAndGet();
+    downstream.execute(
+        () -> {
+          List<I> inputs = new ArrayList<>(batch.size());
+          for (PendingCall<I, O> call : batch) {
+            inputs.add(call.input);
+          }
+
+          try {
+            List<O> outputs = batchCall.apply(inputs);
+            // A short or long answer can't be matched to the callers, fail them all rather than guess
+            if (outputs.size() != batch.size()) {
+              throw new IllegalStateException(
+                  name + " returned " + outputs.size() + " results for " + batch.size() + " calls");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+              batch.get(i).result.complete(outputs.get(i));
+            }
+          } catch (Throwable t) {
+            for (PendingCall<I, O> call : batch) {
+              call.result.completeExceptionally(t);
+            }
+          }
+        });
+  }
+
+  private static final class PendingCall<I, O> {
+    private final I input;
+    private final CompletableFuture<O> result = new CompletableFuture<>();
+
+    private PendingCall(I input) {
+      this.input = input;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityExecutionContext;
+import io.temporal.client.ActivityCompletionClient;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Worker-side wrapper that coalesces the per-transaction activity calls of concurrently running
+ * workflows into the batch methods of the wrapped {@link TransactionActivities}, so one downstream
+ * round-trip serves every transaction that arrived within the coalescing window.
+ */
+public class CoalescingTransactionActivities implements TransactionActivities {
+  private static final Logger log = LoggerFactory.getLogger(CoalescingTransactionActivities.class);
+
+  private final TransactionActivities delegate;
+  // Null unless completeTransaction releases its activity slot while the batch settles
+  private final ActivityCompletionClient completionClient;
+  // Each caller's future completes with the outcome of its own entry, so one failing entry only
+  // fails its own activity
+  private final ActivityCoalescer<TransactionRequest, TransactionOutcome> mintCoalescer;
+  private final ActivityCoalescer<Transaction, TransactionOutcome> initCoalescer;
+  private final ActivityCoalescer<Transaction, TransactionOutcome> cancelCoalescer;
+  private final ActivityCoalescer<Transaction, TransactionOutcome> completeCoalescer;
+
+  public CoalescingTransactionActivities(
+      TransactionActivities delegate, long windowMillis, int maxBatchSize) {
+    this(delegate, windowMillis, maxBatchSize, null);
+  }
+
+  public CoalescingTransactionActivities(
+      TransactionActivities delegate,
+      long windowMillis,
+      int maxBatchSize,
+      ActivityCompletionClient completionClient) {
+    this.delegate = delegate;
+    this.completionClient = completionClient;
+
+    ScheduledExecutorService windowTimer =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "activity-coalescer-timer");
+              t.setDaemon(true);
+              return t;
+            });
+    ExecutorService downstream =
+        Executors.newCachedThreadPool(
+            r -> {
+              Thread t = new Thread(r, "activity-coalescer-downstream");
+              t.setDaemon(true);
+              return t;
+            });
+
+    this.mintCoalescer =
+        new ActivityCoalescer<>(
+            "mintTransactionId",
+            delegate::mintTransactionIds,
+            windowMillis,
+            maxBatchSize,
+            windowTimer,
+            downstream);
+    this.initCoalescer =
+        new ActivityCoalescer<>(
+            "initTransaction",
+            delegate::initTransactions,
+            windowMillis,
+            maxBatchSize,
+            windowTimer,
+            downstream);
+    this.cancelCoalescer =
+        new ActivityCoalescer<>(
+            "cancelTransaction",
+            delegate::cancelTransactions,
+            windowMillis,
+            maxBatchSize,
+            windowTimer,
+            downstream);
+    this.completeCoalescer =
+        new ActivityCoalescer<>(
+            "completeTransaction",
+            delegate::completeTransactions,
+            windowMillis,
+            maxBatchSize,
+            windowTimer,
+            downstream);
+  }
+
+  @Override
+  public Transaction mintTransactionId(TransactionRequest txRequest) {
+    return mintCoalescer.call(txRequest).getOrThrow();
+  }
+
+  @Override
+  public Transaction initTransaction(Transaction tx) {
+    return initCoalescer.call(tx).getOrThrow();
+  }
+
+  @Override
+  public void cancelTransaction(Transaction tx) {
+    cancelCoalescer.call(tx).getOrThrow();
+  }
+
+  @Override
+  public void completeTransaction(Transaction tx) {
+    ActivityExecutionContext context = Activity.getExecutionContext();
+    if (completionClient != null && !context.getInfo().isLocal()) {
+      byte[] taskToken = context.getTaskToken();
+      context.doNotCompleteOnReturn();
+      completeCoalescer
+          .submit(tx)
+          .whenComplete(
+              (outcome, batchFailure) -> {
+                Throwable failure =
+                    batchFailure == null && outcome.isFailure() ? outcome.toFailure() : batchFailure;
+                try {
+                  if (failure == null) {
+                    completionClient.complete(taskToken, null);
+                  } else {
+                    completionClient.completeExceptionally(
+                        taskToken,
+                        failure instanceof Exception ? (Exception) failure : new Exception(failure));
+                  }
+                } catch (Exception e) {
+                  log.warn("Async settlement failed to complete: {}", e.getMessage());
+                }
+              });
+      return;
+    }
+
+    completeCoalescer.call(tx).getOrThrow();
+  }
+
+  @Override
+  public void validateAmount(TransactionRequest txRequest) {
+    delegate.validateAmount(txRequest);
+  }
+
+  @Override
+  public void validateAccounts(TransactionRequest txRequest) {
+    delegate.validateAccounts(txRequest);
+  }
+
+  @Override
+  public List<TransactionOutcome> mintTransactionIds(List<TransactionRequest> txRequests) {
+    return delegate.mintTransactionIds(txRequests);
+  }
+
+  @Override
+  public List<TransactionOutcome> initTransactions(List<Transaction> txs) {
+    return delegate.initTransactions(txs);
+  }
+
+  @Override
+  public List<TransactionOutcome> cancelTransactions(List<Transaction> txs) {
+    return delegate.cancelTransactions(txs);
+  }
+
+  @Override
+  public List<TransactionOutcome> completeTransactions(List<Transaction> txs) {
+    return delegate.completeTransactions(txs);
+  }
+
+  public List<Map<String, Object>> getStats() {
+    List<Map<String, Object>> stats = new ArrayList<>();
+    stats.add(mintCoalescer.getStats());
+    stats.add(initCoalescer.getStats());
+    stats.add(cancelCoalescer.getStats());
+    stats.add(completeCoalescer.getStats());
+    return stats;
+  }
+}
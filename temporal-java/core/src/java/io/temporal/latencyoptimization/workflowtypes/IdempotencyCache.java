@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.latencyoptimization.transaction.Transaction;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, TTL-evicted cache of successful activity results keyed by an idempotency key.
+ * Concurrent duplicates wait for the first caller instead of running the step again, failures are
+ * never cached. Entries can optionally be persisted to an {@link IdempotencyFileStore} so that
+ * duplicates arriving after a worker restart are still short-circuited.
+ */
+public class IdempotencyCache {
+  private final long ttlMillis;
+  private final int maxEntries;
+  private final IdempotencyFileStore store;
+
+  private final ConcurrentHashMap<String, CompletableFuture<Entry>> entries =
+      new ConcurrentHashMap<>();
+  // Every entry has the same TTL, so insertion order is also expiry order
+  private final ConcurrentLinkedQueue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  public IdempotencyCache(long ttlMillis, int maxEntries, IdempotencyFileStore store) {
+    this.ttlMillis = ttlMillis;
+    this.maxEntries = maxEntries;
+    this.store = store;
+
+    if (store != null) {
+      long now = System.currentTimeMillis();
+      store
+          .load(now)
+          .forEach(
+              (key, record) -> {
+                entries.put(
+                    key,
+                    CompletableFuture.completedFuture(
+                        new Entry(record.getTransaction(), record.getExpiresAtMillis())));
+                insertionOrder.add(key);
+              });
+    }
+  }
+
+  /** Returns the cached result for {@code key}, or runs {@code step} and caches its result. */
+  public Transaction getOrCompute(String key, Supplier<Transaction> step) {
+    return getOrCompute(key, step, () -> true);
+  }
+
+  /**
+   * Like {@link #getOrCompute(String, Supplier)}, but only caches the result if {@code isFinal}
+   * holds once the step returns. The check runs before the result is published, so a concurrent
+   * duplicate either waits and runs the step itself or gets a final result, never a provisional one.
+   */
+  public Transaction getOrCompute(String key, Supplier<Transaction> step, BooleanSupplier isFinal) {
+    CompletableFuture<Entry> mine = new CompletableFuture<>();
+    while (true) {
+      CompletableFuture<Entry> existing = entries.putIfAbsent(key, mine);
+      if (existing == null) {
+        break;
+      }
+
+      Entry entry;
+      try {
+        entry = existing.join();
+      } catch (CompletionException e) {
+        // The first caller failed, or its result wasn't final, and removed its entry, try to run the
+        // step ourselves
+        continue;
+      }
+      if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+        entries.remove(key, existing);
+        continue;
+      }
+      hits.increment();
+      return entry.value;
+    }
+
+    misses.increment();
+    Transaction value;
+    try {
+      value = step.get();
+    } catch (RuntimeException e) {
+      entries.remove(key, mine);
+      mine.completeExceptionally(e);
+      throw e;
+    }
+
+    if (!isFinal.getAsBoolean()) {
+      entries.remove(key, mine);
+      mine.completeExceptionally(new IllegalStateException("Result of " + key + " is not final"));
+      return value;
+    }
+
+    Entry entry = new Entry(value, System.currentTimeMillis() + ttlMillis);
+    mine.complete(entry);
+    insertionOrder.add(key);
+    if (store != null) {
+      store.append(key, entry.expiresAtMillis, value);
+    }
+    evict();
+    return value;
+  }
+
+  public Map<String, Object> getStats() {
+    return Map.of(
+        "entries", entries.size(),
+        "hits", hits.sum(),
+        "misses", misses.sum(),
+        "persistent", store != null);
+  }
+
+  private void evict() {
+    long now = System.currentTimeMillis();
+    String oldest;
+    while ((oldest = insertionOrder.peek()) != null) {
+      CompletableFuture<Entry> future = entries.get(oldest);
+      boolean expired =
+          future == null || (future.isDone() && !future.isCompletedExceptionally()
+              && future.join().expiresAtMillis <= now);
+      if (!expired && entries.size() <= maxEntries) {
+        return;
+      }
+      if (insertionOrder.remove(oldest) && future != null) {
+        entries.remove(oldest, future);
+      }
+    }
+  }
+
+  private static final class Entry {
+    // Null for steps without a result, e.g. completeTransaction
+    private final Transaction value;
+    private final long expiresAtMillis;
+
+    private Entry(Transaction value, long expiresAtMillis) {
+      this.value = value;
+      this.expiresAtMillis = expiresAtMillis;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only NDJSON log backing {@link IdempotencyCache}. Appends only queue the record; a
+ * background thread writes the queue in batches and flushes every {@value #FLUSH_INTERVAL_MILLIS}
+ * ms, so activities never wait for the disk and a crash loses at most the last batch. Loading, and
+ * a compaction every {@code compactEveryMillis}, drop expired records and rewrite the file, so it
+ * holds the live records plus at most one compaction interval of appends.
+ */
+public class IdempotencyFileStore {
+  private static final Logger log = LoggerFactory.getLogger(IdempotencyFileStore.class);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final long FLUSH_INTERVAL_MILLIS = 50;
+
+  private final Path path;
+  private final ConcurrentLinkedQueue<Record> pending = new ConcurrentLinkedQueue<>();
+  // Writer and file are only touched under the store's lock, by load and the background thread
+  private BufferedWriter writer;
+
+  public IdempotencyFileStore(Path path, long compactEveryMillis) {
+    if (compactEveryMillis <= 0) {
+      throw new IllegalArgumentException("compactEveryMillis must be positive: " + compactEveryMillis);
+    }
+    this.path = path;
+
+    ScheduledExecutorService background =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r, "idempotency-store-writer");
+              t.setDaemon(true);
+              return t;
+            });
+    background.scheduleWithFixedDelay(
+        this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    background.scheduleWithFixedDelay(
+        () -> compact(System.currentTimeMillis()),
+        compactEveryMillis,
+        compactEveryMillis,
+        TimeUnit.MILLISECONDS);
+    // Write the last batch on a clean shutdown
+    Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "idempotency-store-flush"));
+  }
+
+  synchronized Map<String, Record> load(long nowMillis) {
+    try {
+      Map<String, Record> live = readLive(nowMillis);
+      rewrite(live.values());
+      return live;
+    } catch (IOException e) {
+      throw new UncheckedIOException("Failed to load idempotency store " + path, e);
+    }
+  }
+
+  void append(String key, long expiresAtMillis, Transaction transaction) {
+    pending.add(new Record(key, expiresAtMillis, transaction));
+  }
+
+  synchronized void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    int written = 0;
+    try {
+      if (writer == null) {
+        writer =
+            Files.newBufferedWriter(
+                path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      }
+      Record record;
+      while ((record = pending.poll()) != null) {
+        writeLine(record);
+        written++;
+      }
+      writer.flush();
+    } catch (IOException e) {
+      // The in-memory cache still holds the entries, only restart durability is lost
+      log.warn("Failed to persist idempotency records after {}: {}", written, e.getMessage());
+    }
+  }
+
+  // Drops expired records by rewriting the file, runs on the background thread
+  synchronized void compact(long nowMillis) {
+    flush();
+    try {
+      rewrite(readLive(nowMillis).values());
+    } catch (IOException e) {
+      log.warn("Failed to compact idempotency store {}: {}", path, e.getMessage());
+    }
+  }
+
+  private Map<String, Record> readLive(long nowMillis) throws IOException {
+    Map<String, Record> live = new LinkedHashMap<>();
+    if (!Files.exists(path)) {
+      return live;
+    }
+    for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+      if (line.isBlank()) {
+        continue;
+      }
+      Record record = MAPPER.readValue(line, Record.class);
+      if (record.getExpiresAtMillis() > nowMillis) {
+        live.put(record.getKey(), record);
+      }
+    }
+    return live;
+  }
+
+  // Writes the records to a new file that replaces the log, then keeps appending to it
+  private void rewrite(Collection<Record> records) throws IOException {
+    if (writer != null) {
+      writer.close();
+      writer = null;
+    }
+    Path absolute = path.toAbsolutePath();
+    if (absolute.getParent() != null) {
+      Files.createDirectories(absolute.getParent());
+    }
+    Path compacted = absolute.resolveSibling(absolute.getFileName() + ".compact");
+    writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8);
+    try {
+      for (Record record : records) {
+        writeLine(record);
+      }
+    } finally {
+      writer.close();
+      writer = null;
+    }
+    Files.move(
+        compacted, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    writer =
+        Files.newBufferedWriter(
+            path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+  }
+
+  private void writeLine(Record record) throws IOException {
+    writer.write(MAPPER.writeValueAsString(record));
+    writer.newLine();
+  }
+
+  static final class Record {
+    private final String key;
+    private final long expiresAtMillis;
+    private final Transaction transaction;
+
+    @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+    Record(
+        @JsonProperty("key") String key,
+        @JsonProperty("expiresAtMillis") long expiresAtMillis,
+        @JsonProperty("transaction") Transaction transaction) {
+      this.key = key;
+      this.expiresAtMillis = expiresAtMillis;
+      this.transaction = transaction;
+    }
+
+    @JsonProperty("key")
+    String getKey() {
+      return key;
+    }
+
+    @JsonProperty("expiresAtMillis")
+    long getExpiresAtMillis() {
+      return expiresAtMillis;
+    }
+
+    @JsonProperty("transaction")
+    Transaction getTransaction() {
+      return transaction;
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.activity.Activity;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Short-circuits repeated activity calls with the original result. Minting is keyed by the
+ * client-supplied {@link TransactionRequest#getRequestKey()}, so a retried request gets the same
+ * transaction back; the later steps are keyed by that transaction's ID, so they are deduplicated
+ * as well, including plain activity retries after a lost completion.
+ */
+public class IdempotentTransactionActivities implements TransactionActivities {
+  private final TransactionActivities delegate;
+  private final IdempotencyCache cache;
+
+  public IdempotentTransactionActivities(TransactionActivities delegate, IdempotencyCache cache) {
+    this.delegate = delegate;
+    this.cache = cache;
+  }
+
+  @Override
+  public Transaction mintTransactionId(TransactionRequest txRequest) {
+    if (txRequest.getRequestKey() == null) {
+      return delegate.mintTransactionId(txRequest);
+    }
+    return cache.getOrCompute(
+        "mint:" + txRequest.getRequestKey(), () -> delegate.mintTransactionId(txRequest));
+  }
+
+  @Override
+  public Transaction initTransaction(Transaction tx) {
+    if (tx.getId() == null) {
+      return delegate.initTransaction(tx);
+    }
+    return cache.getOrCompute("init:" + tx.getId(), () -> delegate.initTransaction(tx));
+  }
+
+  @Override
+  public void cancelTransaction(Transaction tx) {
+    if (tx.getId() == null) {
+      delegate.cancelTransaction(tx);
+      return;
+    }
+    runOnce("cancel:" + tx.getId(), () -> delegate.cancelTransaction(tx));
+  }
+
+  @Override
+  public void completeTransaction(Transaction tx) {
+    if (tx.getId() == null) {
+      delegate.completeTransaction(tx);
+      return;
+    }
+    runOnce("complete:" + tx.getId(), () -> delegate.completeTransaction(tx));
+  }
+
+  @Override
+  public void validateAmount(TransactionRequest txRequest) {
+    delegate.validateAmount(txRequest);
+  }
+
+  @Override
+  public void validateAccounts(TransactionRequest txRequest) {
+    delegate.validateAccounts(txRequest);
+  }
+
+  @Override
+  public List<TransactionOutcome> mintTransactionIds(List<TransactionRequest> txRequests) {
+    return delegate.mintTransactionIds(txRequests);
+  }
+
+  @Override
+  public List<TransactionOutcome> initTransactions(List<Transaction> txs) {
+    return delegate.initTransactions(txs);
+  }
+
+  @Override
+  public List<TransactionOutcome> cancelTransactions(List<Transaction> txs) {
+    return delegate.cancelTransactions(txs);
+  }
+
+  @Override
+  public List<TransactionOutcome> completeTransactions(List<Transaction> txs) {
+    return delegate.completeTransactions(txs);
+  }
+
+  public Map<String, Object> getStats() {
+    return cache.getStats();
+  }
+
+  private void runOnce(String key, Runnable step) {
+    cache.getOrCompute(
+        key,
+        () -> {
+          step.run();
+          return null;
+        },
+        // An asynchronously completed activity hasn't settled yet, so its result isn't final
+        () -> !Activity.getExecutionContext().isDoNotCompleteOnReturn());
+  }
+}
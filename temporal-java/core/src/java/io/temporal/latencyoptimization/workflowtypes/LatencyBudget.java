@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.activity.LocalActivityOptions;
+import io.temporal.common.RetryOptions;
+import io.temporal.failure.ActivityFailure;
+import io.temporal.failure.TimeoutFailure;
+import io.temporal.workflow.Functions;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+
+/**
+ * Latency budget for the steps that run before the early-return update completes. Each step runs
+ * as a local activity whose timeouts and retry backoff are derived from its share of the remaining
+ * budget. Once the budget is exhausted, the remaining steps run on the fallback (regular activity)
+ * stub and the update can answer "pending" instead of holding the caller.
+ *
+ * <p>The workflow clock doesn't advance while local activities run inside one workflow task, so
+ * the budget is split up front across the remaining steps rather than re-measured after each one.
+ */
+public final class LatencyBudget {
+  private static final Duration UNBUDGETED_TIMEOUT = Duration.ofSeconds(30);
+  // Below this a local activity attempt has no realistic chance of finishing
+  private static final long MIN_STEP_MILLIS = 5;
+
+  private final long budgetMillis;
+  private final TransactionActivities unbudgetedActivities;
+  private final TransactionActivities fallbackActivities;
+  private long remainingMillis;
+  private boolean exhausted = false;
+
+  private LatencyBudget(long budgetMillis, TransactionActivities fallbackActivities) {
+    this.budgetMillis = budgetMillis;
+    this.fallbackActivities = fallbackActivities;
+    this.unbudgetedActivities =
+        Workflow.newLocalActivityStub(
+            TransactionActivities.class,
+            LocalActivityOptions.newBuilder().setStartToCloseTimeout(UNBUDGETED_TIMEOUT).build());
+
+    // Time spent between the run starting and this workflow task counts against the budget
+    long elapsedMillis = Workflow.currentTimeMillis() - Workflow.getInfo().getRunStartedTimestampMillis();
+    this.remainingMillis = Math.max(0, budgetMillis - Math.max(0, elapsedMillis));
+  }
+
+  /** A budget of 0 or less disables budgeting, every step then runs with the default options. */
+  public static LatencyBudget forUpdate(long budgetMillis, TransactionActivities fallbackActivities) {
+    return new LatencyBudget(budgetMillis, fallbackActivities);
+  }
+
+  public boolean isExhausted() {
+    return exhausted;
+  }
+
+  /**
+   * Runs one step as a budgeted local activity. {@code stepsLeft} includes this step and is used to
+   * split the remaining budget. A timeout exhausts the budget and retries the step on the fallback.
+   */
+  public <R> R run(int stepsLeft, Functions.Func1<TransactionActivities, R> step) {
+    if (budgetMillis <= 0) {
+      return step.apply(unbudgetedActivities);
+    }
+    if (exhausted) {
+      return step.apply(fallbackActivities);
+    }
+
+    long stepMillis = remainingMillis / Math.max(1, stepsLeft);
+    if (stepMillis < MIN_STEP_MILLIS) {
+      exhausted = true;
+      return step.apply(fallbackActivities);
+    }
+    remainingMillis -= stepMillis;
+
+    TransactionActivities budgeted =
+        Workflow.newLocalActivityStub(TransactionActivities.class, stepOptions(stepMillis));
+    try {
+      return step.apply(budgeted);
+    } catch (ActivityFailure e) {
+      if (!(e.getCause() instanceof TimeoutFailure)) {
+        throw e;
+      }
+      exhausted = true;
+      return step.apply(fallbackActivities);
+    }
+  }
+
+  private static LocalActivityOptions stepOptions(long stepMillis) {
+    Duration step = Duration.ofMillis(stepMillis);
+    return LocalActivityOptions.newBuilder()
+        .setScheduleToCloseTimeout(step)
+        .setStartToCloseTimeout(step)
+        // Keep every retry local, a timer-backed retry would blow the budget by itself
+        .setLocalRetryThreshold(step)
+        .setRetryOptions(
+            RetryOptions.newBuilder()
+                .setInitialInterval(Duration.ofMillis(Math.max(1, stepMillis / 10)))
+                .setBackoffCoefficient(2.0)
+                .setMaximumInterval(Duration.ofMillis(Math.max(1, stepMillis / 2)))
+                .build())
+        .build();
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Simulated downstream latency of one activity method: a delay distribution plus injected error
+ * and timeout rates. Profiles are written as {@code <distribution>:<key>=<value>,...}, for example
+ * {@code lognormal:median=10,sigma=0.8,errorRate=0.01}.
+ *
+ * <ul>
+ *   <li>{@code fixed:ms=10}
+ *   <li>{@code uniform:min=5,max=20}
+ *   <li>{@code lognormal:median=10,sigma=0.5}
+ *   <li>{@code pareto:scale=10,shape=1.5}, heavy tail with minimum {@code scale}
+ * </ul>
+ *
+ * <p>Every distribution is capped at {@code max} milliseconds (default 10000) and accepts {@code
+ * errorRate} and {@code timeoutRate}, fractions from 0 to 1. An injected timeout hangs the call for
+ * {@code hangMs} (default 35000), past the 30 s start-to-close timeout the workflows use.
+ */
+public final class LatencyProfile {
+  private static final long DEFAULT_MAX_MILLIS = 10_000;
+  private static final long DEFAULT_HANG_MILLIS = 35_000;
+
+  public enum Distribution {
+    FIXED,
+    UNIFORM,
+    LOGNORMAL,
+    PARETO
+  }
+
+  private final Distribution distribution;
+  private final Map<String, Double> params;
+  private final double errorRate;
+  private final double timeoutRate;
+  private final long maxMillis;
+  private final long hangMillis;
+
+  private LatencyProfile(Distribution distribution, Map<String, Double> params) {
+    this.distribution = distribution;
+    this.params = params;
+    this.errorRate = params.getOrDefault("errorRate", 0.0);
+    this.timeoutRate = params.getOrDefault("timeoutRate", 0.0);
+    this.maxMillis = params.getOrDefault("max", (double) DEFAULT_MAX_MILLIS).longValue();
+    this.hangMillis = params.getOrDefault("hangMs", (double) DEFAULT_HANG_MILLIS).longValue();
+    validate();
+  }
+
+  public static LatencyProfile fixed(long millis) {
+    Map<String, Double> params = new LinkedHashMap<>();
+    params.put("ms", (double) millis);
+    return new LatencyProfile(Distribution.FIXED, params);
+  }
+
+  /** Parses a profile spec, throwing {@link IllegalArgumentException} if it is malformed. */
+  public static LatencyProfile parse(String spec) {
+    String trimmed = spec.trim();
+    int colon = trimmed.indexOf(':');
+    String name = colon < 0 ? trimmed : trimmed.substring(0, colon);
+
+    Distribution distribution;
+    try {
+      distribution = Distribution.valueOf(name.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown latency distribution: " + name);
+    }
+
+    Map<String, Double> params = new LinkedHashMap<>();
+    if (colon >= 0) {
+      for (String pair : trimmed.substring(colon + 1).split(",")) {
+        if (pair.isBlank()) {
+          continue;
+        }
+        int eq = pair.indexOf('=');
+        if (eq < 0) {
+          throw new IllegalArgumentException("Expected key=value in latency profile: " + pair);
+        }
+        String key = pair.substring(0, eq).trim();
+        try {
+          params.put(key, Double.parseDouble(pair.substring(eq + 1).trim()));
+        } catch (NumberFormatException e) {
+          throw new IllegalArgumentException("Not a number for " + key + ": " + pair);
+        }
+      }
+    }
+    return new LatencyProfile(distribution, params);
+  }
+
+  /** Draws one delay in milliseconds. */
+  public long sampleMillis() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double millis;
+    switch (distribution) {
+      case UNIFORM:
+        double min = params.get("min");
+        double max = params.get("max");
+        millis = min + random.nextDouble() * (max - min);
+        break;
+      case LOGNORMAL:
+        millis = params.get("median") * Math.exp(params.get("sigma") * random.nextGaussian());
+        break;
+      case PARETO:
+        // Inverse CDF, 1 - nextDouble() keeps the base away from 0
+        millis =
+            params.get("scale") / Math.pow(1.0 - random.nextDouble(), 1.0 / params.get("shape"));
+        break;
+      case FIXED:
+      default:
+        millis = params.get("ms");
+    }
+    return Math.min(maxMillis, Math.max(0, Math.round(millis)));
+  }
+
+  public boolean drawError() {
+    return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+  }
+
+  public boolean drawTimeout() {
+    return timeoutRate > 0 && ThreadLocalRandom.current().nextDouble() < timeoutRate;
+  }
+
+  public long getHangMillis() {
+    return hangMillis;
+  }
+
+  private void validate() {
+    switch (distribution) {
+      case UNIFORM:
+        require("min");
+        require("max");
+        if (params.get("max") < params.get("min")) {
+          throw new IllegalArgumentException("uniform latency needs min <= max");
+        }
+        break;
+      case LOGNORMAL:
+        require("median");
+        require("sigma");
+        break;
+      case PARETO:
+        require("scale");
+        require("shape");
+        if (params.get("shape") <= 0) {
+          throw new IllegalArgumentException("pareto latency needs shape > 0");
+        }
+        break;
+      case FIXED:
+      default:
+        require("ms");
+    }
+    if (errorRate < 0 || errorRate > 1 || timeoutRate < 0 || timeoutRate > 1) {
+      throw new IllegalArgumentException("errorRate and timeoutRate must be between 0 and 1");
+    }
+  }
+
+  private void require(String key) {
+    if (!params.containsKey(key)) {
+      throw new IllegalArgumentException(
+          distribution.name().toLowerCase() + " latency needs " + key);
+    }
+  }
+
+  /** The spec this profile parses from. */
+  @Override
+  public String toString() {
+    StringBuilder spec = new StringBuilder(distribution.name().toLowerCase()).append(':');
+    String separator = "";
+    for (Map.Entry<String, Double> param : params.entrySet()) {
+      spec.append(separator).append(param.getKey()).append('=');
+      double value = param.getValue();
+      if (value == Math.rint(value)) {
+        spec.append((long) value);
+      } else {
+        spec.append(value);
+      }
+      separator = ",";
+    }
+    return spec.toString();
+  }
+}
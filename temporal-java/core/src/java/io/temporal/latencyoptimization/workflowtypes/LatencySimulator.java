@@ -0,0 +1,160 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.failure.ApplicationFailure;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Injects downstream latency, errors and timeouts into the transaction activities. Each activity
+ * method has its own {@link LatencyProfile}, a method without one uses the {@code *} profile if set
+ * and otherwise the flat delay the activities have always used.
+ *
+ * <p>Profiles are configured as {@code <method>=<profile>;<method>=<profile>}, for example {@code
+ * completeTransaction=pareto:scale=80,shape=2;*=lognormal:median=10,sigma=0.5}, and can be replaced
+ * while the worker runs.
+ */
+public class LatencySimulator {
+  public static final String ANY_METHOD = "*";
+
+  private static final Map<String, LatencyProfile> FLAT_DEFAULTS =
+      Map.of(
+          "completeTransaction", LatencyProfile.fixed(100),
+          "completeTransactions", LatencyProfile.fixed(100));
+  private static final LatencyProfile FLAT_DEFAULT = LatencyProfile.fixed(10);
+
+  private final ConcurrentHashMap<String, LatencyProfile> profiles = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, MethodStats> stats = new ConcurrentHashMap<>();
+
+  public LatencySimulator() {}
+
+  public LatencySimulator(String spec) {
+    configure(spec);
+  }
+
+  /**
+   * Sets the profiles listed in {@code spec}, leaving other methods unchanged. Nothing is applied
+   * if any profile fails to parse.
+   */
+  public void configure(String spec) {
+    if (spec == null || spec.isBlank()) {
+      return;
+    }
+    Map<String, LatencyProfile> parsed = new LinkedHashMap<>();
+    for (String entry : spec.split(";")) {
+      if (entry.isBlank()) {
+        continue;
+      }
+      int eq = entry.indexOf('=');
+      if (eq < 0) {
+        throw new IllegalArgumentException("Expected <method>=<profile>: " + entry);
+      }
+      parsed.put(entry.substring(0, eq).trim(), LatencyProfile.parse(entry.substring(eq + 1)));
+    }
+    profiles.putAll(parsed);
+  }
+
+  /** Drops every configured profile, going back to the flat defaults. */
+  public void reset() {
+    profiles.clear();
+  }
+
+  public LatencyProfile profileFor(String method) {
+    LatencyProfile profile = profiles.get(method);
+    if (profile == null) {
+      profile = profiles.get(ANY_METHOD);
+    }
+    if (profile == null) {
+      profile = FLAT_DEFAULTS.getOrDefault(method, FLAT_DEFAULT);
+    }
+    return profile;
+  }
+
+  /**
+   * Draws the delay for one call of {@code method} without waiting, for callers that schedule the
+   * completion themselves. Injected errors are thrown right away, an injected timeout returns its
+   * hang time.
+   */
+  public long nextDelayMillis(String method) {
+    LatencyProfile profile = profileFor(method);
+    MethodStats methodStats = stats.computeIfAbsent(method, m -> new MethodStats());
+    methodStats.calls.increment();
+
+    if (profile.drawError()) {
+      methodStats.errors.increment();
+      throw ApplicationFailure.newFailure("Injected failure in " + method, "InjectedFailure");
+    }
+    long delay;
+    if (profile.drawTimeout()) {
+      methodStats.timeouts.increment();
+      delay = profile.getHangMillis();
+    } else {
+      delay = profile.sampleMillis();
+    }
+    methodStats.delayMillis.add(delay);
+    return delay;
+  }
+
+  /** Waits out the simulated latency of one call of {@code method}. */
+  public void delay(String method) {
+    long millis = nextDelayMillis(method);
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Configured profiles and per-method call, injection and average delay counters. */
+  public Map<String, Object> getStats() {
+    Map<String, String> configured = new LinkedHashMap<>();
+    profiles.forEach((method, profile) -> configured.put(method, profile.toString()));
+
+    Map<String, Object> methods = new LinkedHashMap<>();
+    stats.forEach(
+        (method, s) -> {
+          long calls = s.calls.sum();
+          long delayed = calls - s.errors.sum();
+          Map<String, Object> m = new LinkedHashMap<>();
+          m.put("profile", profileFor(method).toString());
+          m.put("calls", calls);
+          m.put("injectedErrors", s.errors.sum());
+          m.put("injectedTimeouts", s.timeouts.sum());
+          m.put("avgDelayMillis", delayed == 0 ? 0.0 : (double) s.delayMillis.sum() / delayed);
+          methods.put(method, m);
+        });
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("profiles", configured);
+    result.put("methods", methods);
+    return result;
+  }
+
+  private static final class MethodStats {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder delayMillis = new LongAdder();
+  }
+}
@@ -23,6 +23,7 @@ import io.temporal.activity.ActivityInterface;
 import io.temporal.activity.ActivityMethod;
 import io.temporal.latencyoptimization.transaction.Transaction;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import java.util.List;
 
 @ActivityInterface
 public interface TransactionActivities {
@@ -37,4 +38,28 @@ public interface TransactionActivities {
 
   @ActivityMethod
   void completeTransaction(Transaction tx);
+
+  // Independent checks split out of initTransaction so a workflow can run them concurrently. Every
+  // workflow runs validateAmount before initTransaction, which only reserves the funds
+
+  @ActivityMethod
+  void validateAmount(TransactionRequest txRequest);
+
+  @ActivityMethod
+  void validateAccounts(TransactionRequest txRequest);
+
+  // Batch variants make one downstream call for the whole list. They return one outcome per entry,
+  // in order, so an entry that fails, e.g. for insufficient funds, doesn't fail the others
+
+  @ActivityMethod
+  List<TransactionOutcome> mintTransactionIds(List<TransactionRequest> txRequests);
+
+  @ActivityMethod
+  List<TransactionOutcome> initTransactions(List<Transaction> txs);
+
+  @ActivityMethod
+  List<TransactionOutcome> cancelTransactions(List<Transaction> txs);
+
+  @ActivityMethod
+  List<TransactionOutcome> completeTransactions(List<Transaction> txs);
 }
@@ -19,65 +19,279 @@
 
 package io.temporal.latencyoptimization.workflowtypes;
 
+import io.temporal.activity.Activity;
+import io.temporal.activity.ActivityExecutionContext;
+import io.temporal.client.ActivityCompletionClient;
 import io.temporal.failure.ApplicationFailure;
+import io.temporal.latencyoptimization.transaction.SnowflakeTransactionIdGenerator;
 import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionIdGenerator;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class TransactionActivitiesImpl implements TransactionActivities {
+  private static final Logger log = LoggerFactory.getLogger(TransactionActivitiesImpl.class);
+
+  // Null unless settlement is completed asynchronously
+  private final ActivityCompletionClient completionClient;
+  private final ScheduledExecutorService settlementScheduler;
+  private final TransactionIdGenerator idGenerator;
+  // Null unless balances are tracked in an in-memory ledger
+  private final AccountLedger ledger;
+  private final LatencySimulator latency;
+
+  public TransactionActivitiesImpl() {
+    this(null);
+  }
+
+  /**
+   * With a completion client, {@link #completeTransaction} returns immediately and releases its
+   * activity slot, the settlement finishes on a scheduler and completes the activity by task token.
+   */
+  public TransactionActivitiesImpl(ActivityCompletionClient completionClient) {
+    this(completionClient, SnowflakeTransactionIdGenerator.getDefault());
+  }
+
+  public TransactionActivitiesImpl(
+      ActivityCompletionClient completionClient, TransactionIdGenerator idGenerator) {
+    this(completionClient, idGenerator, null);
+  }
+
+  /**
+   * With a ledger, init reserves the amount on the source account, cancel releases it and
+   * completion settles it, so concurrent transfers on the same accounts contend for its locks.
+   */
+  public TransactionActivitiesImpl(
+      ActivityCompletionClient completionClient,
+      TransactionIdGenerator idGenerator,
+      AccountLedger ledger) {
+    this(completionClient, idGenerator, ledger, new LatencySimulator());
+  }
+
+  /** The simulator decides the downstream latency, errors and timeouts of every method. */
+  public TransactionActivitiesImpl(
+      ActivityCompletionClient completionClient,
+      TransactionIdGenerator idGenerator,
+      AccountLedger ledger,
+      LatencySimulator latency) {
+    this.completionClient = completionClient;
+    this.idGenerator = idGenerator;
+    this.ledger = ledger;
+    this.latency = latency;
+    this.settlementScheduler =
+        completionClient == null
+            ? null
+            : Executors.newScheduledThreadPool(
+                4,
+                r -> {
+                  Thread t = new Thread(r, "async-settlement");
+                  t.setDaemon(true);
+                  return t;
+                });
+  }
 
   @Override
   public Transaction mintTransactionId(TransactionRequest request) {
-    System.out.println("Minting transaction ID");
-    // Simulate transaction ID generation
-    String txId = "TXID" + String.format("%010d", (long) (Math.random() * 1_000_000_0000L));
+    log.debug("Minting transaction ID");
+    String txId = idGenerator.nextId();
 
-    sleep(10);
-    System.out.println("Transaction ID minted: " + txId);
+    latency.delay("mintTransactionId");
+    log.info("Transaction ID minted: {}", txId);
     return new Transaction(
         txId, request.getSourceAccount(), request.getTargetAccount(), request.getAmount());
   }
 
   @Override
   public Transaction initTransaction(Transaction tx) {
-    sleep(10);
-    System.out.println("Initializing transaction");
+    latency.delay("initTransaction");
+    log.debug("Initializing transaction {}", tx.getId());
+
+    // The amount was checked by validateAmount, init only reserves it
+    reserve(tx);
+
+    return tx;
+  }
+
+  @Override
+  public void cancelTransaction(Transaction tx) {
+    log.debug("Cancelling transaction {}", tx.getId());
+    latency.delay("cancelTransaction");
+    if (ledger != null) {
+      ledger.release(tx.getId());
+    }
+    log.info("Transaction cancelled: {}", tx.getId());
+  }
+
+  @Override
+  public void completeTransaction(Transaction tx) {
+    // Local activities can't be completed by task token, they always settle in place
+    ActivityExecutionContext context = Activity.getExecutionContext();
+    if (completionClient != null && !context.getInfo().isLocal()) {
+      long settlementMillis = latency.nextDelayMillis("completeTransaction");
+      byte[] taskToken = context.getTaskToken();
+      context.doNotCompleteOnReturn();
+      settlementScheduler.schedule(
+          () -> {
+            try {
+              settle(tx);
+              completionClient.complete(taskToken, null);
+            } catch (Exception e) {
+              log.warn("Async settlement of {} failed: {}", tx.getId(), e.getMessage());
+              // Fail the activity now so it is retried, instead of at its start-to-close timeout
+              try {
+                completionClient.completeExceptionally(taskToken, e);
+              } catch (Exception completionFailure) {
+                log.warn("Failed to report settlement failure: {}", completionFailure.getMessage());
+              }
+            }
+          },
+          settlementMillis,
+          TimeUnit.MILLISECONDS);
+      return;
+    }
+
+    latency.delay("completeTransaction");
+    settle(tx);
+  }
+
+  private void settle(Transaction tx) {
+    if (ledger != null) {
+      ledger.settle(tx.getId());
+    }
+    log.info(
+        "Transaction {} completed: sent ${} from {} to {}",
+        tx.getId(),
+        tx.getAmount(),
+        tx.getSourceAccount(),
+        tx.getTargetAccount());
+  }
+
+  private void reserve(Transaction tx) {
+    if (ledger != null && !ledger.reserve(tx)) {
+      log.info("Insufficient funds: {}", tx.getSourceAccount());
+      throw ApplicationFailure.newNonRetryableFailure(
+          "Non-retryable Activity Failure: Insufficient Funds", "InsufficientFunds");
+    }
+  }
+
+  @Override
+  public void validateAmount(TransactionRequest txRequest) {
+    latency.delay("validateAmount");
+    log.debug("Validating amount");
 
-    if (tx.getAmount() <= 0) {
-      System.out.println("Invalid amount: " + tx.getAmount());
+    if (txRequest.getAmount() <= 0) {
+      log.info("Invalid amount: {}", txRequest.getAmount());
       throw ApplicationFailure.newNonRetryableFailure(
           "Non-retryable Activity Failure: Invalid Amount", "InvalidAmount");
     }
+  }
 
+  @Override
+  public void validateAccounts(TransactionRequest txRequest) {
+    latency.delay("validateAccounts");
+    log.debug("Validating accounts");
 
-    return tx;
+    if (isBlank(txRequest.getSourceAccount())
+        || isBlank(txRequest.getTargetAccount())
+        || txRequest.getSourceAccount().equals(txRequest.getTargetAccount())) {
+      log.info(
+          "Invalid accounts: {} -> {}", txRequest.getSourceAccount(), txRequest.getTargetAccount());
+      throw ApplicationFailure.newNonRetryableFailure(
+          "Non-retryable Activity Failure: Invalid Account", "InvalidAccount");
+    }
   }
 
   @Override
-  public void cancelTransaction(Transaction tx) {
-    System.out.println("Cancelling transaction");
-    sleep(10);
-    System.out.println("Transaction cancelled");
+  public List<TransactionOutcome> mintTransactionIds(List<TransactionRequest> requests) {
+    log.debug("Minting {} transaction IDs", requests.size());
+    List<TransactionOutcome> txs = new ArrayList<>(requests.size());
+    for (TransactionRequest request : requests) {
+      try {
+        txs.add(
+            TransactionOutcome.success(
+                new Transaction(
+                    idGenerator.nextId(),
+                    request.getSourceAccount(),
+                    request.getTargetAccount(),
+                    request.getAmount())));
+      } catch (RuntimeException e) {
+        txs.add(TransactionOutcome.failure(e));
+      }
+    }
+
+    latency.delay("mintTransactionIds");
+    return txs;
   }
 
   @Override
-  public void completeTransaction(Transaction tx) {
-    sleep(100);
-    System.out.println(
-        "Sending $"
-            + tx.getAmount()
-            + " from "
-            + tx.getSourceAccount()
-            + " to "
-            + tx.getTargetAccount());
-
-    System.out.println("Transaction completed successfully");
-  }
-
-  private void sleep(long millis) {
-    try {
-      Thread.sleep(millis);
-    } catch (InterruptedException e) {
-      Thread.currentThread().interrupt();
+  public List<TransactionOutcome> initTransactions(List<Transaction> txs) {
+    latency.delay("initTransactions");
+    log.debug("Initializing {} transactions", txs.size());
+
+    List<TransactionOutcome> initialized = new ArrayList<>(txs.size());
+    for (Transaction tx : txs) {
+      // Only a failing entry fails, the rest of the batch keeps its reservations
+      try {
+        if (ledger != null && !ledger.reserve(tx)) {
+          log.info("Insufficient funds: {}", tx.getSourceAccount());
+          initialized.add(
+              TransactionOutcome.failure(
+                  "InsufficientFunds", "Non-retryable Activity Failure: Insufficient Funds", false));
+        } else {
+          initialized.add(TransactionOutcome.success(tx));
+        }
+      } catch (RuntimeException e) {
+        initialized.add(TransactionOutcome.failure(e));
+      }
+    }
+
+    return initialized;
+  }
+
+  @Override
+  public List<TransactionOutcome> cancelTransactions(List<Transaction> txs) {
+    log.debug("Cancelling {} transactions", txs.size());
+    latency.delay("cancelTransactions");
+    List<TransactionOutcome> cancelled = new ArrayList<>(txs.size());
+    for (Transaction tx : txs) {
+      try {
+        if (ledger != null) {
+          ledger.release(tx.getId());
+        }
+        cancelled.add(TransactionOutcome.success(tx));
+      } catch (RuntimeException e) {
+        cancelled.add(TransactionOutcome.failure(e));
+      }
     }
+    log.info("{} transactions cancelled", txs.size());
+    return cancelled;
+  }
+
+  @Override
+  public List<TransactionOutcome> completeTransactions(List<Transaction> txs) {
+    latency.delay("completeTransactions");
+    List<TransactionOutcome> completed = new ArrayList<>(txs.size());
+    for (Transaction tx : txs) {
+      try {
+        if (ledger != null) {
+          ledger.settle(tx.getId());
+        }
+        completed.add(TransactionOutcome.success(tx));
+      } catch (RuntimeException e) {
+        completed.add(TransactionOutcome.failure(e));
+      }
+    }
+    log.info("Completed {} transactions", txs.size());
+    return completed;
+  }
+
+  private static boolean isBlank(String s) {
+    return s == null || s.isBlank();
   }
 }
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.temporal.failure.ApplicationFailure;
+import io.temporal.latencyoptimization.transaction.Transaction;
+
+/**
+ * Result of one entry of a batch activity: the transaction, or why this entry failed. A failing
+ * entry doesn't fail the rest of its batch.
+ */
+public class TransactionOutcome {
+  private final Transaction transaction;
+  private final String failureType;
+  private final String failureMessage;
+  private final boolean retryable;
+
+  @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
+  public TransactionOutcome(
+      @JsonProperty("transaction") Transaction transaction,
+      @JsonProperty("failureType") String failureType,
+      @JsonProperty("failureMessage") String failureMessage,
+      @JsonProperty("retryable") boolean retryable) {
+    this.transaction = transaction;
+    this.failureType = failureType;
+    this.failureMessage = failureMessage;
+    this.retryable = retryable;
+  }
+
+  public static TransactionOutcome success(Transaction transaction) {
+    return new TransactionOutcome(transaction, null, null, false);
+  }
+
+  public static TransactionOutcome failure(String type, String message, boolean retryable) {
+    return new TransactionOutcome(null, type, message, retryable);
+  }
+
+  // Unexpected errors of one entry, retried like the single-item activity would be
+  public static TransactionOutcome failure(RuntimeException e) {
+    return failure(e.getClass().getSimpleName(), String.valueOf(e.getMessage()), true);
+  }
+
+  @JsonProperty("transaction")
+  public Transaction getTransaction() {
+    return transaction;
+  }
+
+  @JsonProperty("failureType")
+  public String getFailureType() {
+    return failureType;
+  }
+
+  @JsonProperty("failureMessage")
+  public String getFailureMessage() {
+    return failureMessage;
+  }
+
+  @JsonProperty("retryable")
+  public boolean isRetryable() {
+    return retryable;
+  }
+
+  @JsonIgnore
+  public boolean isFailure() {
+    return failureType != null;
+  }
+
+  /** The transaction, or this entry's failure thrown as the single-item activity would throw it. */
+  public Transaction getOrThrow() {
+    if (isFailure()) {
+      throw toFailure();
+    }
+    return transaction;
+  }
+
+  public ApplicationFailure toFailure() {
+    return retryable
+        ? ApplicationFailure.newFailure(failureMessage, failureType)
+        : ApplicationFailure.newNonRetryableFailure(failureMessage, failureType);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.workflow.UpdateMethod;
+import io.temporal.workflow.UpdateValidatorMethod;
+import io.temporal.workflow.WorkflowInterface;
+import io.temporal.workflow.WorkflowMethod;
+
+/**
+ * Long-lived processor that accepts one transaction per update instead of starting a new workflow
+ * per transfer. A small pool of these runs per account shard and continues-as-new to bound history.
+ */
+@WorkflowInterface
+public interface TransactionProcessorWorkflow {
+  @WorkflowMethod
+  void run();
+
+  @UpdateMethod(name = "submit-transaction")
+  TxResult submitTransaction(TransactionRequest txRequest);
+
+  @UpdateValidatorMethod(updateName = "submit-transaction")
+  void validateSubmitTransaction(TransactionRequest txRequest);
+
+  /**
+   * Waits until a transaction submitted to this run has settled, so the caller can measure the
+   * latency from its submission to settlement.
+   */
+  @UpdateMethod(name = "await-settlement")
+  TxResult awaitSettlement(String transactionId);
+
+  @UpdateValidatorMethod(updateName = "await-settlement")
+  void validateAwaitSettlement(String transactionId);
+}
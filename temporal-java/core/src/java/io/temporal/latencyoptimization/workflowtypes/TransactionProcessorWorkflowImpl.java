@@ -0,0 +1,132 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.activity.LocalActivityOptions;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TransactionProcessorWorkflowImpl implements TransactionProcessorWorkflow {
+  private static final Logger log = LoggerFactory.getLogger(TransactionProcessorWorkflowImpl.class);
+
+  // Upper bound on transactions per run, continue-as-new keeps the history small after that
+  static final int MAX_TRANSACTIONS_PER_RUN = 500;
+
+  private final TransactionActivities localActivities =
+      Workflow.newLocalActivityStub(
+          TransactionActivities.class,
+          LocalActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofSeconds(30)).build());
+
+  private final TransactionActivities activities =
+      Workflow.newActivityStub(
+          TransactionActivities.class,
+          ActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofSeconds(30)).build());
+
+  private int transactionsThisRun = 0;
+  private int settlementsInFlight = 0;
+  private boolean draining = false;
+  // Outcome of each transaction initialized by this run, null until it has settled
+  private final Map<String, TxResult> settlements = new HashMap<>();
+
+  @Override
+  public void run() {
+    Workflow.await(
+        () ->
+            transactionsThisRun >= MAX_TRANSACTIONS_PER_RUN
+                || Workflow.getInfo().isContinueAsNewSuggested());
+
+    // Stop accepting new transactions and let the in-flight ones settle before continuing as new
+    draining = true;
+    Workflow.await(() -> settlementsInFlight == 0 && Workflow.isEveryHandlerFinished());
+
+    log.info("Processed {} transactions, continuing as new.", transactionsThisRun);
+    Workflow.continueAsNew();
+  }
+
+  @Override
+  public void validateSubmitTransaction(TransactionRequest txRequest) {
+    if (draining) {
+      throw new IllegalStateException("Processor is continuing as new, retry the transaction.");
+    }
+  }
+
+  @Override
+  public TxResult submitTransaction(TransactionRequest txRequest) {
+    transactionsThisRun++;
+
+    // The amount check doesn't need the minted ID, so it runs alongside mint
+    Promise<Void> amountChecked = Async.procedure(localActivities::validateAmount, txRequest);
+    Transaction tx = localActivities.mintTransactionId(txRequest);
+    // Counted only once minted, a failed mint has nothing to settle and must not block the drain
+    settlementsInFlight++;
+
+    try {
+      amountChecked.get();
+      tx = localActivities.initTransaction(tx);
+    } catch (Exception e) {
+      // If initialization failed, cancel the transaction in the background and fail the update
+      Async.procedure(activities::cancelTransaction, tx).handle((r, f) -> settlementsInFlight--);
+      log.info("Initialization failed.");
+      throw Workflow.wrap(e);
+    }
+
+    // Settlement continues inside the processor after the update has returned to the caller
+    String transactionId = tx.getId();
+    settlements.put(transactionId, null);
+    Async.procedure(activities::completeTransaction, tx)
+        .handle(
+            (r, f) -> {
+              settlementsInFlight--;
+              settlements.put(
+                  transactionId,
+                  f == null
+                      ? new TxResult(transactionId, "Transaction completed successfully.")
+                      : new TxResult(transactionId, "Settlement failed: " + f.getMessage()));
+              return null;
+            });
+
+    return new TxResult(
+        tx.getId(), "Initialization successful"); // Return the update result to the caller
+  }
+
+  @Override
+  public void validateAwaitSettlement(String transactionId) {
+    if (!settlements.containsKey(transactionId)) {
+      throw new IllegalArgumentException("Unknown transaction: " + transactionId);
+    }
+  }
+
+  @Override
+  public TxResult awaitSettlement(String transactionId) {
+    Workflow.await(() -> settlements.get(transactionId) != null);
+    return settlements.get(transactionId);
+  }
+}
@@ -23,6 +23,8 @@ import io.temporal.activity.ActivityOptions;
 import io.temporal.latencyoptimization.transaction.Transaction;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
 import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
 import io.temporal.workflow.Workflow;
 import java.time.Duration;
 import org.slf4j.Logger;
@@ -41,9 +43,12 @@ public class TransactionWorkflowImpl implements TransactionWorkflow {
 
   @Override
   public TxResult processTransaction(TransactionRequest txRequest) {
+    // The amount check doesn't need the minted ID, so it runs alongside mint
+    Promise<Void> amountChecked = Async.procedure(activities::validateAmount, txRequest);
     this.tx = activities.mintTransactionId(txRequest);
 
     try {
+      amountChecked.get();
       this.tx = activities.initTransaction(this.tx);
     } catch (Exception e) {
       initError = e;
@@ -24,6 +24,8 @@ import io.temporal.activity.LocalActivityOptions;
 import io.temporal.latencyoptimization.transaction.Transaction;
 import io.temporal.latencyoptimization.transaction.TransactionRequest;
 import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
 import io.temporal.workflow.Workflow;
 import java.time.Duration;
 import org.slf4j.Logger;
@@ -45,13 +47,20 @@ public class TransactionWorkflowLocalBeforeUpdateImpl implements TransactionWork
   private boolean initDone = false;
   private Transaction tx;
   private Exception initError = null;
+  private LatencyBudget budget;
 
   @Override
   public TxResult processTransaction(TransactionRequest txRequest) {
-    this.tx = localActivities.mintTransactionId(txRequest);
+    budget = LatencyBudget.forUpdate(txRequest.getUpdateBudgetMs(), activities);
+
+    // The amount check doesn't need the minted ID, so it runs alongside mint
+    Promise<Void> amountChecked = Async.procedure(localActivities::validateAmount, txRequest);
+    this.tx = budget.run(2, a -> a.mintTransactionId(txRequest));
 
     try {
-      this.tx = localActivities.initTransaction(this.tx);
+      amountChecked.get();
+      Transaction minted = this.tx;
+      this.tx = budget.run(1, a -> a.initTransaction(minted));
     } catch (Exception e) {
       initError = e;
     } finally {
@@ -70,7 +79,13 @@ public class TransactionWorkflowLocalBeforeUpdateImpl implements TransactionWork
 
   @Override
   public TxResult returnInitResult() {
-    Workflow.await(() -> initDone); // Wait for the initialization step of the workflow to complete
+    // Wait for the initialization step of the workflow to complete, or for its budget to run out
+    Workflow.await(() -> initDone || (budget != null && budget.isExhausted()));
+
+    if (!initDone) {
+      // Out of latency budget, answer now and let the workflow finish initialization on its own
+      return new TxResult(tx != null ? tx.getId() : "", "Initialization pending");
+    }
 
     if (initError != null) {
       log.info("Initialization failed.");
@@ -0,0 +1,109 @@
+/*
+ *  Copyright (c) 2020 Temporal Technologies, Inc. All Rights Reserved
+ *
+ *  Copyright 2012-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ *  Modifications copyright (C) 2017 Uber Technologies, Inc.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"). You may not
+ *  use this file except in compliance with the License. A copy of the License is
+ *  located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ *  or in the "license" file accompanying this file. This file is distributed on
+ *  an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ *  express or implied. See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+
+
+package io.temporal.latencyoptimization.workflowtypes;
+
+import io.temporal.activity.ActivityOptions;
+import io.temporal.activity.LocalActivityOptions;
+import io.temporal.latencyoptimization.transaction.Transaction;
+import io.temporal.latencyoptimization.transaction.TransactionRequest;
+import io.temporal.latencyoptimization.transaction.TxResult;
+import io.temporal.workflow.Async;
+import io.temporal.workflow.Promise;
+import io.temporal.workflow.Workflow;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Same early-return flow as {@link TransactionWorkflowLocalBeforeUpdateImpl}, plus an account check.
+ * Mint and both checks start together, and init reserves the funds once the ID is minted and the
+ * amount checked. The reservation needs the minted ID, so the path to the early-return update stays
+ * mint then init; running the checks alongside keeps the account check off that path.
+ */
+public class TransactionWorkflowParallelImpl implements TransactionWorkflowParallel {
+  private static final Logger log = LoggerFactory.getLogger(TransactionWorkflowParallelImpl.class);
+
+  private final TransactionActivities localActivities =
+      Workflow.newLocalActivityStub(
+          TransactionActivities.class,
+          LocalActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofSeconds(30)).build());
+
+  private final TransactionActivities activities =
+      Workflow.newActivityStub(
+          TransactionActivities.class,
+          ActivityOptions.newBuilder().setStartToCloseTimeout(Duration.ofSeconds(30)).build());
+
+  private boolean initDone = false;
+  private Transaction tx;
+  private Exception initError = null;
+
+  @Override
+  public TxResult processTransaction(TransactionRequest txRequest) {
+    Promise<Transaction> minted = Async.function(localActivities::mintTransactionId, txRequest);
+    Promise<Void> amountChecked = Async.procedure(localActivities::validateAmount, txRequest);
+    Promise<Void> accountsChecked = Async.procedure(localActivities::validateAccounts, txRequest);
+    // Reserve the funds as soon as the ID is minted and the amount checked, alongside the account check
+    Promise<Transaction> reserved =
+        minted.thenCompose(
+            minting ->
+                amountChecked.thenCompose(
+                    checked -> Async.function(localActivities::initTransaction, minting)));
+
+    this.tx = minted.get();
+
+    // Wait for every step rather than failing fast, so nothing is left running on failure
+    Workflow.await(
+        () ->
+            reserved.isCompleted() && amountChecked.isCompleted() && accountsChecked.isCompleted());
+
+    try {
+      reserved.get();
+      amountChecked.get();
+      accountsChecked.get();
+    } catch (Exception e) {
+      initError = e;
+    } finally {
+      initDone = true; // Will unblock the early-return returnInitResult method
+    }
+
+    if (initError != null) {
+      // If initialization failed, cancel the transaction
+      activities.cancelTransaction(this.tx);
+      return new TxResult("", "Transaction cancelled.");
+    } else {
+      activities.completeTransaction(this.tx);
+      return new TxResult(this.tx.getId(), "Transaction completed successfully.");
+    }
+  }
+
+  @Override
+  public TxResult returnInitResult() {
+    Workflow.await(() -> initDone); // Wait for the initialization step of the workflow to complete
+
+    if (initError != null) {
+      log.info("Initialization failed.");
+      throw Workflow.wrap(initError);
+    }
+
+    return new TxResult(
+        tx.getId(), "Initialization successful"); // Return the update result to the caller
+  }
+}
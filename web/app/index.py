@@ -257,14 +257,20 @@ async def sub(workflow_id):
     @stream_with_context
     async def async_generator():
         async with ClientSession() as session:
+            # ETag of the last response sent, an unchanged run then answers 304 and sends nothing
+            etag = None
             while True:
                 # print('querying workflow_id prefix: {workflow_id}'.format(workflow_id=workflow_id))
                 
                 try:
                     async with session.get(
-                        f'http://localhost:{api_port}/workflows/{workflow_id}'
+                        f'http://localhost:{api_port}/workflows/{workflow_id}',
+                        headers={'If-None-Match': etag} if etag else None
                     ) as response:
-                        if response.status == 200:
+                        if response.status == 304:
+                            pass
+                        elif response.status == 200:
+                            etag = response.headers.get('ETag')
                             workflow_results = await response.json()
                             event = ServerSentEvent(
                                 data=json.dumps(workflow_results),
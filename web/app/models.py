@@ -4,7 +4,11 @@ SCENARIOS = [
     {'id': 'UpdateWithStartRegularActivities', 'label': 'Update-With-Start (regular activities)'},
     {'id': 'LocalActivities', 'label': 'Workflow Start (local activities)'},
     {'id': "UpdateWithStartLocalActivities", 'label': "Update-With-Start (local activities)"},
+    {'id': "UpdateWithStartRegularActivitiesAccepted", 'label': "Update-With-Start, return on accept (regular activities)"},
+    {'id': "UpdateWithStartLocalActivitiesAccepted", 'label': "Update-With-Start, return on accept (local activities)"},
+    {'id': "UpdateWithStartParallelLocalActivities", 'label': "Update-With-Start (parallel local activities)"},
     {'id': "EagerLocalActivities", 'label': "Eager Workflow Start (local activities)"},
+    {'id': "TransactionProcessor", 'label': "Long-lived Transaction Processor (update per transaction)"},
 ]
 
 ACCOUNT_TYPES = [